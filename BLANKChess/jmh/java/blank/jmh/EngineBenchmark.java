@@ -0,0 +1,57 @@
+package blank.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * JMH benchmarks of the engine hot paths, one per operation of Benchmarks (move generation, make / unmake, evaluation,
+ * move ordering, TT probe / store, hashing and a fixed-depth search).
+ *
+ * Every operation runs in its own forked JVMs, so the JIT profile of one benchmark cannot skew another, and the result
+ * of each operation is returned to JMH, which consumes it with a Blackhole.
+ *
+ * JMH does not accept benchmarks in the default package, and a named package cannot import the engine classes of the
+ * default package, so the operations of Benchmarks are looked up by reflection once per trial, outside the measurement.
+ *
+ *          mvn -P jmh package
+ *          java -jar target/benchmarks.jar -prof gc
+ *          java -jar target/benchmarks.jar -p operation=search -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EngineBenchmark {
+    @Param({"getAllLegalMoves", "getAllCaptures", "makeUnmake", "evaluate", "orderMoves", "ttProbe", "ttStore",
+            "generateHash", "search"})
+    public String operation;
+
+    private LongSupplier benchmark;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        Class<?> benchmarks = Class.forName("Benchmarks");
+        Object instance = benchmarks.getConstructor().newInstance();
+        benchmark = (LongSupplier) benchmarks.getMethod("getOperation", String.class).invoke(instance, operation);
+    }
+
+    @Benchmark
+    public long run(){
+        return benchmark.getAsLong();
+    }
+}
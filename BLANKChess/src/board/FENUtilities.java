@@ -125,6 +125,59 @@ public class FENUtilities {
         b.setFullMoveNum(Integer.parseInt(splitFEN[5]));    // set turn count
     }
 
+    /**
+     * Converts a chess board to FEN (Forsyth–Edwards Notation), the reverse of convertFENtoBoard()
+     * so that a position can be copied to another board (i.e. a board per thread)
+     *
+     * @param b refers to the chess board
+     * @return the FEN notation of the board position
+     */
+    public static String convertBoardToFEN(Board b){
+        if(b == null){  // check null inputs
+            throw new IllegalArgumentException("Null input");
+        }
+        StringBuilder FEN = new StringBuilder();
+
+        // piece position information, from a8 (index 0) to h1 (index 63)
+        for(int row = 0; row < 8; row++){
+            int emptyTiles = 0;
+            for(int col = 0; col < 8; col++){
+                Piece piece = b.getTile(row * 8 + col).getPiece();
+                if(piece == null){
+                    emptyTiles++;
+                    continue;
+                }
+                if(emptyTiles > 0){
+                    FEN.append(emptyTiles);
+                    emptyTiles = 0;
+                }
+                // White pieces use upper-case letters, Black pieces use lowercase letters
+                FEN.append(piece.isWhite() ? piece.toString().toUpperCase() : piece.toString().toLowerCase());
+            }
+            if(emptyTiles > 0){
+                FEN.append(emptyTiles);
+            }
+            if(row < 7){
+                FEN.append('/');
+            }
+        }
+
+        // turn information
+        FEN.append(b.isWhiteTurn() ? " w " : " b ");
+
+        // castling information
+        String castling = (b.getWhiteKingSideCastle() ? "K" : "") + (b.getWhiteQueenSideCastle() ? "Q" : "")
+                + (b.getBlackKingSideCastle() ? "k" : "") + (b.getBlackQueenSideCastle() ? "q" : "");
+        FEN.append(castling.isEmpty() ? "-" : castling);
+
+        // enpassant information
+        FEN.append(' ').append(b.canEnpassant() ? convertIndexToRankAndFile(b.getEnpassant()) : "-");
+
+        // move count information
+        FEN.append(' ').append(b.getHalfMoveClock()).append(' ').append(b.getFullMoveNum());
+        return FEN.toString();
+    }
+
     /**
      * Converts a rank and file format of chess position to and index from 0 to 63.
      * Board is indexed with zero starting at the top left and 63 being at the bottom right
@@ -67,8 +67,8 @@ public abstract class Piece {
             else{   // only need to capture the piece
                 for (Short moves : moveSquares) {
                     end = MoveGenerator.getEnd(moves);
-                    if(this.isPawn()){  // if this piece is a pawn, check if it can capture enpassant
-                        if (end == board.getAttackingPieceLocation() || end == board.getEnpassant()) {
+                    if(this.isPawn()){  // if this piece is a pawn, check if it can capture the checking pawn enpassant
+                        if (end == board.getAttackingPieceLocation() || isEnpassantCaptureOfAttacker(end)) {
                             if(this.isPawn() && Pawn.canPromote(this.isWhite(), MoveGenerator.getEnd(moves))){
                                 generatePawnPromotionMoves(moves, moveList);
                             }
@@ -236,10 +236,22 @@ public abstract class Piece {
                 moveSquares = getPossibleMoves(true);
             }
             int end;
+            // a capture may also block a sliding piece, i.e. an enpassant capture landing between the king and attacker
+            HashSet<Integer> counterCheckSquares = board.getAttackingPiece().isSliderPiece() ? board.getCounterCheckSquares() : null;
             for (Short moves : moveSquares) {
                 end = MoveGenerator.getEnd(moves);
-                if(this.isPawn()){  // if this piece is a pawn, check if it can capture enpassant as well
-                    if (end == board.getAttackingPieceLocation() || end == board.getEnpassant()) {
+                if(counterCheckSquares != null){
+                    if (counterCheckSquares.contains(end)) {
+                        if(this.isPawn() && Pawn.canPromote(this.isWhite(), MoveGenerator.getEnd(moves))){
+                            generatePawnPromotionMoves(moves, moveList);
+                        }
+                        else{
+                            moveList.add(moves);
+                        }
+                    }
+                }
+                else if(this.isPawn()){  // if this piece is a pawn, check if it can capture the checking pawn enpassant
+                    if (end == board.getAttackingPieceLocation() || isEnpassantCaptureOfAttacker(end)) {
                         if(this.isPawn() && Pawn.canPromote(this.isWhite(), MoveGenerator.getEnd(moves))){
                             generatePawnPromotionMoves(moves, moveList);
                         }
@@ -285,6 +297,14 @@ public abstract class Piece {
         return moveList;
     }
 
+    /**
+     * @param end refers to the end position of a pawn capture while the king is in single check
+     * @return true if the capture is an enpassant capture of the pawn giving check
+     */
+    private boolean isEnpassantCaptureOfAttacker(int end){
+        return end == board.getEnpassant() && board.getEnpassantPawnPosition() == board.getAttackingPieceLocation();
+    }
+
     public final boolean isPinned(){
         return board.isPinned(getPosition());
     }
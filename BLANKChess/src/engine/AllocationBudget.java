@@ -0,0 +1,226 @@
+import java.util.ArrayList;
+
+/**
+ * Allocation regression check of the search hot path. Fixed-depth searches and perft runs over fixed positions are
+ * measured in bytes allocated per node by the running thread (com.sun.management.ThreadMXBean), and the check fails
+ * when a measurement goes over its budget, so that a stray boxing, lambda or temporary list in the hot path is caught
+ * before it brings back the garbage collection churn.
+ *
+ * A failure is easier to track down with the breakdown printed after the budgets: the bytes allocated by a single
+ * call of each component of the hot path (move generation, make / unmake, evaluation, ordering, TT, hashing).
+ *
+ * The budgets are set slightly above the allocation of the current hot path, lower them as allocations are removed.
+ *
+ *          java AllocationBudget [depth <search depth>] [perftdepth <perft depth>]
+ */
+public class AllocationBudget {
+    // bytes per node allowed for the fixed-depth searches and for perft (per leaf node), the search measures about
+    // 3.2 KB per node and perft about 190 B per leaf node (mostly the move lists of the move generation)
+    public static double SEARCH_BUDGET_BYTES_PER_NODE = 4000;
+    public static double PERFT_BUDGET_BYTES_PER_NODE = 250;
+
+    public static int SEARCH_DEPTH = 6;
+    public static int PERFT_DEPTH = 3;
+
+    // number of calls of each component measured in the breakdown
+    private static final int BREAKDOWN_CALLS = 20000;
+
+    private final TranspositionTable TT;
+    private final Board[] boards;
+    private final ArrayList<ArrayList<Short>> legalMoves;
+    private final Search[] searchers;
+    private boolean passed = true;
+
+    public AllocationBudget(){
+        TT = new TranspositionTable();
+        boards = new Board[Benchmarks.BENCHMARK_FENS.length];
+        legalMoves = new ArrayList<>();
+        searchers = new Search[Benchmarks.BENCHMARK_FENS.length];
+        for(int i = 0; i < boards.length; i++){
+            boards[i] = new Board();
+            boards[i].init(Benchmarks.BENCHMARK_FENS[i]);
+            legalMoves.add(boards[i].getAllLegalMoves());
+            searchers[i] = new Search(boards[i], TT);
+        }
+    }
+
+    /**
+     * Searches every position to a fixed depth with a new searcher and a cleared transposition table, only the search
+     * itself is measured (not the construction of the board and searcher)
+     * @return the bytes allocated per node
+     */
+    private double measureSearch(int depth, boolean print){
+        long totalBytes = 0;
+        long totalNodes = 0;
+        for(String FEN : Benchmarks.BENCHMARK_FENS){
+            Board board = new Board();
+            board.init(FEN);
+            TT.clear();
+            Search searcher = new Search(board, TT);
+
+            long start = Benchmarks.getAllocatedBytes();
+            Benchmarks.searchMuted(searcher, depth);
+            long bytes = Benchmarks.getAllocatedBytes() - start;
+            long nodes = searcher.getStatistics().getNodes();
+            totalBytes += bytes;
+            totalNodes += nodes;
+
+            if(print){
+                System.out.println(String.format("  %-72s %10d nodes %10.1f B/node", FEN, nodes, (double) bytes / Math.max(1, nodes)));
+            }
+        }
+        return (double) totalBytes / Math.max(1, totalNodes);
+    }
+
+    /**
+     * Runs perft on every position without the perft hash table
+     * @return the bytes allocated per leaf node
+     */
+    private double measurePerft(int depth, boolean print){
+        long totalBytes = 0;
+        long totalNodes = 0;
+        for(String FEN : Benchmarks.BENCHMARK_FENS){
+            Board board = new Board();
+            board.init(FEN);
+            Perft perft = new Perft(board, null);
+
+            long start = Benchmarks.getAllocatedBytes();
+            long nodes = perft.MoveGeneratorTest(depth);
+            long bytes = Benchmarks.getAllocatedBytes() - start;
+            totalBytes += bytes;
+            totalNodes += nodes;
+
+            if(print){
+                System.out.println(String.format("  %-72s %10d nodes %10.1f B/node", FEN, nodes, (double) bytes / Math.max(1, nodes)));
+            }
+        }
+        return (double) totalBytes / Math.max(1, totalNodes);
+    }
+
+    /**
+     * Compares a measurement with its budget
+     */
+    private void check(String name, double bytesPerNode, double budget){
+        boolean withinBudget = bytesPerNode <= budget;
+        passed &= withinBudget;
+        System.out.println(String.format("%-8s %10.1f B/node  budget %10.1f B/node  %s", name, bytesPerNode, budget,
+                withinBudget ? "ok" : "OVER BUDGET"));
+    }
+
+    /**
+     * Operation of the hot path measured in the breakdown, returns a result consumed by the sink of Benchmarks
+     */
+    private interface Operation {
+        long run(int position);
+    }
+
+    /**
+     * @return the bytes allocated by a single call of the operation, cycling over the positions
+     */
+    private double measureOperation(Operation operation){
+        long result = 0;
+        long start = Benchmarks.getAllocatedBytes();
+        for(int i = 0; i < BREAKDOWN_CALLS; i++){
+            result += operation.run(i % boards.length);
+        }
+        long bytes = Benchmarks.getAllocatedBytes() - start;
+        Benchmarks.consume(result);
+        return (double) bytes / BREAKDOWN_CALLS;
+    }
+
+    private long makeUnmake(int position){
+        Board board = boards[position];
+        long hash = 0;
+        for(Short encodedMove : legalMoves.get(position)){
+            Move move = new Move(board, encodedMove);
+            move.makeMove();
+            hash ^= board.getZobristHash();
+            move.unMake();
+        }
+        return hash;
+    }
+
+    private long ttProbe(int position){
+        long hash = boards[position].getZobristHash();
+        return TT.containsKey(hash) ? TT.getEntry(hash).eval : 0;
+    }
+
+    /**
+     * Prints the bytes allocated by a single call of each component of the hot path
+     */
+    private void printBreakdown(){
+        String[] names = {"getAllLegalMoves", "getAllCaptures", "makeMove + unMake (all moves)", "evaluate",
+                "orderMoves (copied list)", "getAllCaptures + orderQuiescence", "ttProbe", "ttStore", "generateHash"};
+        Operation[] operations = {
+                position -> boards[position].getAllLegalMoves().size(),
+                position -> boards[position].getAllCaptures().size(),
+                this::makeUnmake,
+                position -> EvalUtilities.evaluate(boards[position]),
+                position -> MoveOrdering.orderMoves(new ArrayList<>(legalMoves.get(position)), searchers[position], 0, (short) 0).size(),
+                position -> MoveOrdering.orderQuiescence(boards[position].getAllCaptures(), searchers[position], 0, (short) 0).size(),
+                this::ttProbe,
+                position -> {
+                    TT.recordEntry(boards[position].getZobristHash(), (short) 0, (byte) 1, 0, TranspositionTable.EXACT_TYPE);
+                    return position;
+                },
+                position -> Zobrist.generateHash(boards[position])
+        };
+
+        // first run warms up the operations so that the allocations of class loading and compilation are not counted
+        for(Operation operation : operations){
+            measureOperation(operation);
+        }
+
+        System.out.println();
+        System.out.println("Allocation breakdown (bytes per call):");
+        for(int i = 0; i < names.length; i++){
+            System.out.println(String.format("  %-32s %10.1f", names[i], measureOperation(operations[i])));
+        }
+    }
+
+    /**
+     * Measures the allocation of the search and perft, prints the breakdown of the hot path
+     * @return true if every measurement is within its budget
+     */
+    public boolean run(int searchDepth, int perftDepth){
+        // warm up run, so that the allocations of class loading and compilation are not counted
+        measureSearch(searchDepth, false);
+        measurePerft(perftDepth, false);
+
+        System.out.println("Search depth " + searchDepth + ":");
+        double searchBytes = measureSearch(searchDepth, true);
+        System.out.println("Perft depth " + perftDepth + ":");
+        double perftBytes = measurePerft(perftDepth, true);
+
+        System.out.println();
+        check("search", searchBytes, SEARCH_BUDGET_BYTES_PER_NODE);
+        check("perft", perftBytes, PERFT_BUDGET_BYTES_PER_NODE);
+
+        printBreakdown();
+
+        System.out.println();
+        System.out.println(passed ? "ALLOCATION BUDGET PASSED" : "ALLOCATION BUDGET FAILED");
+        return passed;
+    }
+
+    public static void main(String[] args) {
+        int searchDepth = SEARCH_DEPTH;
+        int perftDepth = PERFT_DEPTH;
+        for(int i = 0; i + 1 < args.length; i += 2){
+            switch(args[i]){
+                case "depth":
+                    searchDepth = Integer.parseInt(args[i + 1]);
+                    break;
+                case "perftdepth":
+                    perftDepth = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        if(!new AllocationBudget().run(searchDepth, perftDepth)){
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * Micro-benchmarks of the engine hot paths, used to measure an optimisation before it ships:
+ *
+ *      - board:    getAllLegalMoves, getAllCaptures, makeMove + unMake
+ *      - eval:     EvalUtilities.evaluate
+ *      - ordering: MoveOrdering.orderMoves
+ *      - TT:       probe (containsKey + getEntry) and store (recordEntry)
+ *      - hash:     Zobrist.generateHash
+ *      - search:   fixed-depth Search.depthSearch with a new searcher and a cleared transposition table
+ *
+ * Each benchmark cycles over a set of representative positions (opening, middlegame, tactical and endgame).
+ *
+ * The benchmarks are run with JMH by the Maven build (jmh/java/blank/jmh/EngineBenchmark.java), which forks a new JVM
+ * for every benchmark, consumes the results with a Blackhole and reports the 99.9% confidence interval of each score.
+ * Allocation is profiled with "-prof gc":
+ *
+ *          mvn -P jmh package
+ *          java -jar target/benchmarks.jar -prof gc
+ *
+ * main() is a quick check without the Maven build: every benchmark runs in the same JVM after the previous ones (so
+ * the JIT profiles of earlier benchmarks can skew later ones), and only the standard deviation of the measured
+ * iterations is reported. It also reports the bytes allocated per operation by the benchmark thread and the number /
+ * time of garbage collections during the measurement.
+ *
+ *          java Benchmarks [filter <name>] [warmup <iterations>] [iterations <iterations>] [time <ms per iteration>]
+ */
+public class Benchmarks {
+    public static final String[] BENCHMARK_FENS = {
+            FENUtilities.startFEN,
+            FENUtilities.trickyFEN,
+            "r1bq1rk1/2p1bppp/p1np1n2/1p2p3/3PP3/1B3N2/PPP2PPP/RNBQR1K1 w - - 0 9",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1",
+    };
+
+    // names of the benchmarks, as given to getOperation()
+    public static final String[] OPERATION_NAMES = {"getAllLegalMoves", "getAllCaptures", "makeUnmake", "evaluate",
+            "orderMoves", "ttProbe", "ttStore", "generateHash", "search"};
+
+    // depth of the fixed-depth search benchmark
+    public static int SEARCH_DEPTH = 5;
+
+    private static final int TT_ENTRIES = 1 << 16;
+
+    // results of the benchmarks run by main() and AllocationBudget are added to the sink so that the work is not
+    // removed as dead code
+    private static volatile long sink;
+
+    private static final PrintStream MUTED_OUTPUT = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {}
+    });
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final Board[] boards;
+    private final ArrayList<ArrayList<Short>> legalMoves;
+    private final Search[] searchers;
+    private final TranspositionTable TT;
+    private final TranspositionTable searchTT;
+    private final long[] ttHashes;
+    private int index;
+
+    public Benchmarks(){
+        boards = new Board[BENCHMARK_FENS.length];
+        legalMoves = new ArrayList<>();
+        searchers = new Search[BENCHMARK_FENS.length];
+        TT = new TranspositionTable();
+        searchTT = new TranspositionTable();
+        for(int i = 0; i < BENCHMARK_FENS.length; i++){
+            boards[i] = new Board();
+            boards[i].init(BENCHMARK_FENS[i]);
+            legalMoves.add(boards[i].getAllLegalMoves());
+            searchers[i] = new Search(boards[i], TT);
+        }
+
+        // hashes of the TT benchmarks, half of them are stored before they are probed
+        Random random = new Random(1);
+        ttHashes = new long[TT_ENTRIES];
+        for(int i = 0; i < TT_ENTRIES; i++){
+            ttHashes[i] = random.nextLong();
+            if(i % 2 == 0){
+                TT.recordEntry(ttHashes[i], (short) i, (byte) 1, i, TranspositionTable.EXACT_TYPE);
+            }
+        }
+    }
+
+    /**
+     * @param name refers to one of the OPERATION_NAMES
+     * @return a single operation of the benchmark, returning a result which has to be consumed
+     */
+    public LongSupplier getOperation(String name){
+        switch(name){
+            case "getAllLegalMoves":
+                return this::getAllLegalMoves;
+            case "getAllCaptures":
+                return this::getAllCaptures;
+            case "makeUnmake":
+                return this::makeUnmake;
+            case "evaluate":
+                return this::evaluate;
+            case "orderMoves":
+                return this::orderMoves;
+            case "ttProbe":
+                return this::ttProbe;
+            case "ttStore":
+                return this::ttStore;
+            case "generateHash":
+                return this::generateHash;
+            case "search":
+                return this::search;
+            default:
+                throw new IllegalArgumentException("Unknown benchmark: " + name);
+        }
+    }
+
+    /**
+     * @return the index of the next position, so that each operation runs on the next position of the set
+     */
+    private int nextPosition(){
+        index = (index + 1) % boards.length;
+        return index;
+    }
+
+    private long getAllLegalMoves(){
+        return boards[nextPosition()].getAllLegalMoves().size();
+    }
+
+    private long getAllCaptures(){
+        return boards[nextPosition()].getAllCaptures().size();
+    }
+
+    /**
+     * An operation makes and unmakes every legal move of a position
+     */
+    private long makeUnmake(){
+        int i = nextPosition();
+        Board board = boards[i];
+        long hash = 0;
+        for(Short encodedMove : legalMoves.get(i)){
+            Move move = new Move(board, encodedMove);
+            move.makeMove();
+            hash ^= board.getZobristHash();
+            move.unMake();
+        }
+        return hash;
+    }
+
+    private long evaluate(){
+        return EvalUtilities.evaluate(boards[nextPosition()]);
+    }
+
+    /**
+     * Orders a copy of the legal moves of a position (the copy is included in the allocation)
+     */
+    private long orderMoves(){
+        int i = nextPosition();
+        ArrayList<Short> moves = new ArrayList<>(legalMoves.get(i));
+        return MoveOrdering.orderMoves(moves, searchers[i], 0, (short) 0).get(0);
+    }
+
+    /**
+     * Probes the table like the search, half of the probes are hits
+     */
+    private long ttProbe(){
+        index = (index + 1) & (TT_ENTRIES - 1);
+        if(!TT.containsKey(ttHashes[index])){
+            return 0;
+        }
+        return TT.getEntry(ttHashes[index]).eval;
+    }
+
+    private long ttStore(){
+        index = (index + 1) & (TT_ENTRIES - 1);
+        TT.recordEntry(ttHashes[index], (short) index, (byte) 2, index, TranspositionTable.LOWERBOUND_TYPE);
+        return index;
+    }
+
+    private long generateHash(){
+        return Zobrist.generateHash(boards[nextPosition()]);
+    }
+
+    /**
+     * A fixed-depth search of a position with a new searcher and a cleared transposition table, with the search output
+     * muted
+     */
+    private long search(){
+        Board board = new Board();
+        board.init(BENCHMARK_FENS[nextPosition()]);
+        searchTT.clear();
+        return searchMuted(new Search(board, searchTT), SEARCH_DEPTH);
+    }
+
+    /**
+     * Searches to a fixed depth without printing the search info, used by the benchmarks, AllocationBudget and Bench
+     * @param searcher refers to the searcher of the position
+     * @param depth refers to the depth searched
+     * @return the best move found
+     */
+    static short searchMuted(Search searcher, int depth){
+        PrintStream out = System.out;
+        System.setOut(MUTED_OUTPUT);
+        try{
+            return searcher.depthSearch(depth);
+        }
+        finally{
+            System.setOut(out);
+        }
+    }
+
+    /**
+     * @return the number of bytes allocated by the current thread so far
+     */
+    static long getAllocatedBytes(){
+        return THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Adds a result to the sink, so that the work which computed it is not removed as dead code
+     */
+    static void consume(long result){
+        sink += result;
+    }
+
+    /**
+     * Measured result of a benchmark
+     */
+    private static class Result {
+        final String name;
+        final double nanosPerOp;
+        final double standardDeviation;
+        final double bytesPerOp;
+        final long gcCount;
+        final long gcTime;
+
+        Result(String name, double nanosPerOp, double standardDeviation, double bytesPerOp, long gcCount, long gcTime){
+            this.name = name;
+            this.nanosPerOp = nanosPerOp;
+            this.standardDeviation = standardDeviation;
+            this.bytesPerOp = bytesPerOp;
+            this.gcCount = gcCount;
+            this.gcTime = gcTime;
+        }
+    }
+
+    /**
+     * Runs a benchmark for a number of timed iterations
+     * @param warmupIterations refers to the number of iterations run before measuring
+     * @param iterations refers to the number of measured iterations
+     * @param iterationTime refers to the duration of each iteration in milliseconds
+     */
+    private static Result run(String name, LongSupplier benchmark, int warmupIterations, int iterations, long iterationTime){
+        for(int i = 0; i < warmupIterations; i++){
+            runIteration(benchmark, iterationTime, null);
+        }
+
+        double[] nanosPerOp = new double[iterations];
+        long totalOps = 0;
+        long totalBytes = 0;
+        long gcCount = EngineMetrics.getGCCount();
+        long gcTime = EngineMetrics.getGCTime();
+        for(int i = 0; i < iterations; i++){
+            long[] measurement = new long[2];
+            nanosPerOp[i] = runIteration(benchmark, iterationTime, measurement);
+            totalOps += measurement[0];
+            totalBytes += measurement[1];
+        }
+
+        double mean = 0;
+        for(double score : nanosPerOp){
+            mean += score / iterations;
+        }
+        double variance = 0;
+        for(double score : nanosPerOp){
+            variance += (score - mean) * (score - mean) / Math.max(1, iterations - 1);
+        }
+        return new Result(name, mean, Math.sqrt(variance), (double) totalBytes / totalOps,
+                EngineMetrics.getGCCount() - gcCount, EngineMetrics.getGCTime() - gcTime);
+    }
+
+    /**
+     * Runs the benchmark until the iteration time is used up
+     * @param measurement refers to the array which receives the number of operations and the bytes allocated
+     * @return the average time of an operation in nanoseconds
+     */
+    private static double runIteration(LongSupplier benchmark, long iterationTime, long[] measurement){
+        long startBytes = getAllocatedBytes();
+        long start = System.nanoTime();
+        long end = start + iterationTime * 1000000;
+        long ops = 0;
+        long result = 0;
+        long now;
+        do{
+            result += benchmark.getAsLong();
+            ops++;
+            now = System.nanoTime();
+        } while(now < end);
+        long allocatedBytes = getAllocatedBytes() - startBytes;
+        consume(result);
+
+        if(measurement != null){
+            measurement[0] = ops;
+            measurement[1] = allocatedBytes;
+        }
+        return (double) (now - start) / ops;
+    }
+
+    public static void main(String[] args) {
+        String filter = "";
+        int warmupIterations = 3;
+        int iterations = 5;
+        long iterationTime = 1000;
+        for(int i = 0; i + 1 < args.length; i += 2){
+            switch(args[i]){
+                case "filter":
+                    filter = args[i + 1];
+                    break;
+                case "warmup":
+                    warmupIterations = Integer.parseInt(args[i + 1]);
+                    break;
+                case "iterations":
+                    iterations = Integer.parseInt(args[i + 1]);
+                    break;
+                case "time":
+                    iterationTime = Long.parseLong(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        Benchmarks benchmarks = new Benchmarks();
+        System.out.println(String.format("%-20s %5s %14s %12s %14s %10s %10s", "Benchmark", "Cnt", "Score (ns/op)",
+                "StdDev", "alloc (B/op)", "gc.count", "gc.time"));
+        for(String name : OPERATION_NAMES){
+            if(!name.contains(filter)){
+                continue;
+            }
+            Result result = run(name, benchmarks.getOperation(name), warmupIterations, iterations, iterationTime);
+            System.out.println(String.format("%-20s %5d %14.1f %12.1f %14.1f %10d %8d ms", result.name, iterations,
+                    result.nanosPerOp, result.standardDeviation, result.bytesPerOp, result.gcCount, result.gcTime));
+        }
+    }
+}
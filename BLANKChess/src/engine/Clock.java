@@ -6,11 +6,12 @@ public class Clock {
 
     private boolean isClockStarted;
 
-    // account for lag time per move in milliseconds (when breaking out of search / processing inputs)
-    private static final int LAG_TIME = 150;
+    // account for lag time per move in milliseconds (when breaking out of search / processing inputs), also used by
+    // the TimeManager of the search
+    public static final int LAG_TIME = 150;
 
-    // divides the total time left by 30.
-    private static final int MOVES_TO_GO = 30;
+    // divides the total time left by 30 (when the moves to the next time control are unknown)
+    public static final int MOVES_TO_GO = 30;
 
     /**
      * Constructor
@@ -0,0 +1,157 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events emitted by the engine, so that a stall or a flagged game can be analysed afterwards
+ * from a recording taken on the bot hosts:
+ *
+ *      - SearchIteration:            each iteration of the iterative deepening search (depth, score, nodes, time)
+ *      - SearchTimeDecision:         soft / hard limits given to a search and the reason the search stopped
+ *      - TranspositionTableChange:   allocation (resize by the "Hash" option) and clearing of the transposition table
+ *      - OpeningBookLoad:            building of an opening book from its file
+ *      - OpeningBookLookup:          lookup of a move in an opening book, hit or miss
+ *      - GCSensitivePhase:           phases which are sensitive to garbage collection pauses (the search while the
+ *                                    clock runs, explicit garbage collections), to be lined up with the JVM's own GC
+ *                                    events
+ *
+ * Each event spans the phase it describes (begin() ... commit()), so its duration is recorded by JFR. The events are
+ * cheap when no recording is running: commit() does nothing and the fields are only filled in if shouldCommit().
+ *
+ *          java -XX:StartFlightRecording=filename=blank.jfr,settings=default -jar BLANK.jar
+ *          jfr print --categories "BLANK Chess" blank.jfr
+ */
+public class EngineEvents {
+    public static final String CATEGORY = "BLANK Chess";
+
+    @Name("blank.SearchIteration")
+    @Label("Search Iteration")
+    @Category(CATEGORY)
+    @Description("Iteration of the iterative deepening search")
+    @StackTrace(false)
+    public static class SearchIteration extends Event {
+        @Label("Depth")
+        public int depth;
+
+        @Label("Score")
+        @Description("Score of the best line in centipawns, from the side to move")
+        public int score;
+
+        @Label("Best Move")
+        public String bestMove;
+
+        @Label("Nodes")
+        @Description("Total nodes searched since the search started")
+        public long nodes;
+
+        @Label("Time Since Search Start")
+        @Timespan(Timespan.MILLISECONDS)
+        public long elapsedTime;
+
+        @Label("Completed")
+        @Description("False if the search was stopped before the iteration completed")
+        public boolean completed;
+    }
+
+    @Name("blank.SearchTimeDecision")
+    @Label("Search Time Decision")
+    @Category(CATEGORY)
+    @Description("Time limits of a search and the reason it stopped")
+    @StackTrace(false)
+    public static class SearchTimeDecision extends Event {
+        @Label("Soft Limit")
+        @Timespan(Timespan.MILLISECONDS)
+        public long softLimit;
+
+        @Label("Hard Limit")
+        @Timespan(Timespan.MILLISECONDS)
+        public long hardLimit;
+
+        @Label("Soft Limit Scale")
+        @Description("Scale of the soft limit from the stability of the best move and score")
+        public double softLimitScale;
+
+        @Label("Time Used")
+        @Timespan(Timespan.MILLISECONDS)
+        public long timeUsed;
+
+        @Label("Depth Completed")
+        public int depth;
+
+        @Label("Stop Reason")
+        public String stopReason;
+    }
+
+    @Name("blank.TranspositionTableChange")
+    @Label("Transposition Table Change")
+    @Category(CATEGORY)
+    @Description("Allocation or clearing of the transposition table")
+    @StackTrace(false)
+    public static class TranspositionTableChange extends Event {
+        @Label("Action")
+        public String action;
+
+        @Label("Size (MB)")
+        public int sizeMegabytes;
+
+        @Label("Entries")
+        public int entries;
+    }
+
+    @Name("blank.OpeningBookLoad")
+    @Label("Opening Book Load")
+    @Category(CATEGORY)
+    @Description("Building of an opening book from its file")
+    @StackTrace(false)
+    public static class OpeningBookLoad extends Event {
+        @Label("File")
+        public String fileName;
+
+        @Label("Lines")
+        public int lines;
+    }
+
+    @Name("blank.OpeningBookLookup")
+    @Label("Opening Book Lookup")
+    @Category(CATEGORY)
+    @Description("Lookup of the move to play in the opening book")
+    @StackTrace(false)
+    public static class OpeningBookLookup extends Event {
+        @Label("Full Move Number")
+        public int fullMoveNumber;
+
+        @Label("Hit")
+        public boolean hit;
+
+        @Label("Move")
+        public String move;
+    }
+
+    @Name("blank.GCSensitivePhase")
+    @Label("GC Sensitive Phase")
+    @Category(CATEGORY)
+    @Description("Phase of the engine which is sensitive to garbage collection pauses")
+    @StackTrace(false)
+    public static class GCSensitivePhase extends Event {
+        @Label("Phase")
+        public String phase;
+    }
+
+    /**
+     * Runs an explicit garbage collection, recorded as a GC sensitive phase
+     * @param reason refers to why the memory is freed (i.e. "ucinewgame")
+     */
+    public static void collectGarbage(String reason){
+        GCSensitivePhase event = new GCSensitivePhase();
+        event.begin();
+        Runtime.getRuntime().gc();
+        if(event.shouldCommit()){
+            event.phase = "explicit gc (" + reason + ")";
+            event.commit();
+        }
+    }
+}
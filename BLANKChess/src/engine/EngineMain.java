@@ -30,14 +30,32 @@ public class EngineMain {
     }
 
     public short searchMove(boolean enableOpeningBook, double searchDuration){
+        return searchMove(enableOpeningBook, SearchLimits.timed(searchDuration));
+    }
+
+    /**
+     * @param enableOpeningBook refers to whether the opening book can be used to find a move
+     * @param limits refers to the limits of the search. Opening book is only used for a search limited by the clock
+     * @return the best move found
+     */
+    public short searchMove(boolean enableOpeningBook, SearchLimits limits){
         short bestMove, whiteBookBestMove, blackBookBestMove;
 
         // gets opening moves from opening book for the first few moves (up to 8)
-        if(board.getFullMoveNum() <= 8 && openingBooksLoaded && enableOpeningBook){
+        if(board.getFullMoveNum() <= 8 && openingBooksLoaded && enableOpeningBook && limits.isStandardSearch()){
+            EngineEvents.OpeningBookLookup bookEvent = new EngineEvents.OpeningBookLookup();
+            bookEvent.begin();
             whiteBookBestMove = getOpeningMove(whiteOpeningBook);
             blackBookBestMove = getOpeningMove(blackOpeningBook);
 
             bestMove = board.isWhiteTurn() ? whiteBookBestMove : blackBookBestMove;
+            EngineMetrics.recordBookLookup(bestMove != -1);
+            if(bookEvent.shouldCommit()){
+                bookEvent.fullMoveNumber = board.getFullMoveNum();
+                bookEvent.hit = bestMove != -1;
+                bookEvent.move = (bestMove != -1) ? MoveGenerator.toString(bestMove) : null;
+                bookEvent.commit();
+            }
 
             // checks if the opening book contains the move, if it does not, -1 is returned
             if(bestMove != -1){
@@ -48,7 +66,7 @@ public class EngineMain {
         }
 
         searcher.setBoard(board);
-        bestMove = searcher.startSearch(searchDuration);
+        bestMove = searcher.search(limits);
         return bestMove;
     }
 
@@ -136,7 +154,7 @@ public class EngineMain {
         whiteOpeningBook = null;
         blackOpeningBook = null;
         openingBooksLoaded = false;
-        Runtime.getRuntime().gc();
+        EngineEvents.collectGarbage("clear opening books");
     }
 
     public boolean isWhite(){
@@ -0,0 +1,327 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of the operational metrics of the engine, aggregated over all searches since the engine started:
+ *
+ *      - searches, nodes, NPS distribution per move and depth reached
+ *      - time used vs time allotted (soft limit) of searches on the clock
+ *      - reasons searches stopped (i.e. the hard limit)
+ *      - opening book lookups and hits
+ *      - TT hashfull after the last search
+ *      - garbage collection pauses during searches
+ *
+ * Counters are striped LongAdders, so updating them never contends between threads, and they are only updated once
+ * per search / book lookup (never inside the search tree). The metrics are exported in the Prometheus text format by
+ * MetricsExporter.
+ */
+public class EngineMetrics {
+    private static final ArrayList<Metric> METRICS = new ArrayList<>();
+
+    // NPS buckets of the per-move histogram
+    private static final double[] NPS_BUCKETS = {10000, 25000, 50000, 100000, 250000, 500000, 1000000, 2500000};
+
+    public static final Counter SEARCHES = counter("blank_searches_total", "Searches completed", "");
+    public static final Counter NODES = counter("blank_search_nodes_total", "Nodes searched", "");
+    public static final Histogram NPS = histogram("blank_search_nps", "Nodes per second of each search", NPS_BUCKETS);
+    public static final Summary DEPTH = summary("blank_search_depth", "Depth completed by each search");
+    public static final Counter TIME_USED = secondsCounter("blank_search_time_used_seconds_total",
+            "Time used by searches on the clock", "");
+    public static final Counter TIME_ALLOTTED = secondsCounter("blank_search_time_allotted_seconds_total",
+            "Time allotted (soft limit) to searches on the clock", "");
+    public static final Counter STOP_SOFT_LIMIT = stopReason("SOFT_LIMIT");
+    public static final Counter STOP_STABLE_BEST_MOVE = stopReason("STABLE_BEST_MOVE");
+    public static final Counter STOP_HARD_LIMIT = stopReason("HARD_LIMIT");
+    public static final Counter STOP_COMMAND = stopReason("STOP_COMMAND");
+    public static final Counter STOP_COMPLETED = stopReason("SEARCH_COMPLETED");
+    public static final Counter BOOK_LOOKUPS = counter("blank_book_lookups_total", "Opening book lookups", "");
+    public static final Counter BOOK_HITS = counter("blank_book_hits_total", "Opening book lookups which found a move", "");
+    public static final Gauge HASHFULL = gauge("blank_tt_hashfull_permille", "Transposition table entries used per 1000 after the last search");
+    public static final Counter GC_PAUSE = secondsCounter("blank_search_gc_pause_seconds_total",
+            "Time spent in garbage collections during searches", "");
+    public static final Counter GC_COUNT = counter("blank_search_gc_collections_total",
+            "Garbage collections during searches", "");
+
+    /**
+     * Metric written in the Prometheus text format
+     */
+    private static abstract class Metric {
+        final String name;
+        final String help;
+        final String type;
+
+        Metric(String name, String help, String type){
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        /**
+         * Writes the samples of the metric, without the HELP / TYPE lines
+         */
+        abstract void writeSamples(StringBuilder out);
+    }
+
+    /**
+     * Monotonic counter, optionally with a label (i.e. reason="HARD_LIMIT") and a divisor from the counted unit to
+     * the exported unit (i.e. 1000 from milliseconds to seconds)
+     */
+    public static class Counter extends Metric {
+        private final LongAdder value = new LongAdder();
+        private final String labels;
+        private final double divisor;
+
+        Counter(String name, String help, String labels, double divisor){
+            super(name, help, "counter");
+            this.labels = labels;
+            this.divisor = divisor;
+        }
+
+        public void add(long amount){
+            value.add(amount);
+        }
+
+        public void increment(){
+            value.increment();
+        }
+
+        public long get(){
+            return value.sum();
+        }
+
+        @Override
+        void writeSamples(StringBuilder out){
+            out.append(name).append(labels.isEmpty() ? "" : "{" + labels + "}").append(' ')
+                    .append(formatValue(value.sum() / divisor)).append('\n');
+        }
+    }
+
+    /**
+     * Value which can go up and down, set to the latest measurement
+     */
+    public static class Gauge extends Metric {
+        private final AtomicLong value = new AtomicLong();
+
+        Gauge(String name, String help){
+            super(name, help, "gauge");
+        }
+
+        public void set(long newValue){
+            value.set(newValue);
+        }
+
+        @Override
+        void writeSamples(StringBuilder out){
+            out.append(name).append(' ').append(value.get()).append('\n');
+        }
+    }
+
+    /**
+     * Sum and count of observations, the average is sum / count
+     */
+    public static class Summary extends Metric {
+        private final DoubleAdder sum = new DoubleAdder();
+        private final LongAdder count = new LongAdder();
+
+        Summary(String name, String help){
+            super(name, help, "summary");
+        }
+
+        public void observe(double value){
+            sum.add(value);
+            count.increment();
+        }
+
+        @Override
+        void writeSamples(StringBuilder out){
+            out.append(name).append("_sum ").append(formatValue(sum.sum())).append('\n');
+            out.append(name).append("_count ").append(count.sum()).append('\n');
+        }
+    }
+
+    /**
+     * Distribution of observations over fixed buckets, written as cumulative buckets like Prometheus expects
+     */
+    public static class Histogram extends Metric {
+        private final double[] upperBounds;
+        private final LongAdder[] buckets;     // last bucket counts the observations above every upper bound
+        private final DoubleAdder sum = new DoubleAdder();
+
+        Histogram(String name, String help, double[] upperBounds){
+            super(name, help, "histogram");
+            this.upperBounds = upperBounds;
+            this.buckets = new LongAdder[upperBounds.length + 1];
+            for(int i = 0; i < buckets.length; i++){
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void observe(double value){
+            int bucket = 0;
+            while(bucket < upperBounds.length && value > upperBounds[bucket]){
+                bucket++;
+            }
+            buckets[bucket].increment();
+            sum.add(value);
+        }
+
+        @Override
+        void writeSamples(StringBuilder out){
+            long cumulativeCount = 0;
+            for(int i = 0; i < buckets.length; i++){
+                cumulativeCount += buckets[i].sum();
+                String bound = (i < upperBounds.length) ? formatValue(upperBounds[i]) : "+Inf";
+                out.append(name).append("_bucket{le=\"").append(bound).append("\"} ").append(cumulativeCount).append('\n');
+            }
+            out.append(name).append("_sum ").append(formatValue(sum.sum())).append('\n');
+            out.append(name).append("_count ").append(cumulativeCount).append('\n');
+        }
+    }
+
+    private static Counter counter(String name, String help, String labels){
+        return register(new Counter(name, help, labels, 1));
+    }
+
+    /**
+     * Counter of milliseconds, exported in seconds
+     */
+    private static Counter secondsCounter(String name, String help, String labels){
+        return register(new Counter(name, help, labels, 1000));
+    }
+
+    private static Counter stopReason(String reason){
+        return counter("blank_search_stops_total", "Searches by the reason they stopped", "reason=\"" + reason + "\"");
+    }
+
+    private static Gauge gauge(String name, String help){
+        return register(new Gauge(name, help));
+    }
+
+    private static Summary summary(String name, String help){
+        return register(new Summary(name, help));
+    }
+
+    private static Histogram histogram(String name, String help, double[] upperBounds){
+        return register(new Histogram(name, help, upperBounds));
+    }
+
+    private static <T extends Metric> T register(T metric){
+        METRICS.add(metric);
+        return metric;
+    }
+
+    /**
+     * @return whole numbers without a decimal point, other values as they are
+     */
+    private static String formatValue(double value){
+        return (value == Math.rint(value) && !Double.isInfinite(value)) ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    /**
+     * Records a finished search
+     * @param nodes refers to the number of nodes searched
+     * @param timeUsed refers to the time taken by the search in milliseconds
+     * @param depth refers to the depth completed
+     * @param timeAllotted refers to the soft limit of the search in milliseconds, 0 if it was not on the clock
+     * @param stopReason refers to the reason the search stopped (TimeManager.StopReason, STOP_COMMAND or SEARCH_COMPLETED)
+     * @param hashfull refers to the entries of the transposition table used per 1000
+     * @param gcPauseTime refers to the time spent in garbage collections during the search in milliseconds
+     * @param gcCount refers to the number of garbage collections during the search
+     */
+    public static void recordSearch(long nodes, long timeUsed, int depth, long timeAllotted, String stopReason,
+                                    int hashfull, long gcPauseTime, long gcCount){
+        SEARCHES.increment();
+        NODES.add(nodes);
+        NPS.observe((nodes * 1000.0) / Math.max(1, timeUsed));
+        DEPTH.observe(depth);
+        if(timeAllotted > 0){
+            TIME_USED.add(timeUsed);
+            TIME_ALLOTTED.add(timeAllotted);
+        }
+        switch(stopReason){
+            case "SOFT_LIMIT":
+                STOP_SOFT_LIMIT.increment();
+                break;
+            case "STABLE_BEST_MOVE":
+                STOP_STABLE_BEST_MOVE.increment();
+                break;
+            case "HARD_LIMIT":
+                STOP_HARD_LIMIT.increment();
+                break;
+            case "STOP_COMMAND":
+                STOP_COMMAND.increment();
+                break;
+            default:
+                STOP_COMPLETED.increment();
+        }
+        HASHFULL.set(hashfull);
+        GC_PAUSE.add(gcPauseTime);
+        GC_COUNT.add(gcCount);
+    }
+
+    /**
+     * Records a lookup of the opening book
+     * @param hit refers to whether the book had a move for the position
+     */
+    public static void recordBookLookup(boolean hit){
+        BOOK_LOOKUPS.increment();
+        if(hit){
+            BOOK_HITS.increment();
+        }
+    }
+
+    /**
+     * @return the total time spent in garbage collections by the JVM in milliseconds
+     */
+    public static long getGCTime(){
+        long time = 0;
+        for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()){
+            time += Math.max(0, bean.getCollectionTime());
+        }
+        return time;
+    }
+
+    /**
+     * @return the total number of garbage collections by the JVM
+     */
+    public static long getGCCount(){
+        long count = 0;
+        for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()){
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * @return every metric in the Prometheus text exposition format (version 0.0.4)
+     */
+    public static String toPrometheusText(){
+        StringBuilder out = new StringBuilder();
+        String previousName = null;
+        for(Metric metric : METRICS){
+            // samples of the same metric with different labels share a single HELP / TYPE header
+            if(!metric.name.equals(previousName)){
+                out.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+                out.append("# TYPE ").append(metric.name).append(' ').append(metric.type).append('\n');
+                previousName = metric.name;
+            }
+            metric.writeSamples(out);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Unit Testing
+     */
+    public static void main(String[] args) {
+        recordSearch(1000000, 2000, 12, 3000, "SOFT_LIMIT", 250, 15, 2);
+        recordSearch(40000, 500, 7, 400, "HARD_LIMIT", 300, 0, 0);
+        recordBookLookup(true);
+        recordBookLookup(false);
+        System.out.print(toPrometheusText());
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * Forward pruning stage of the search. Decides when a node or a move can be skipped without searching it fully:
+ *
+ *      Node pruning (before any move is searched):
+ *      - Static null move: static evaluation beats beta by a margin scaled with depth
+ *      - Razoring: static evaluation is far below alpha, drop into quiescence search to verify
+ *      - Null move: give the opponent a free move, if the reduced search still beats beta the node is cut
+ *      - ProbCut: a capture beats beta by a margin in a reduced depth search
+ *
+ *      Move pruning (moves after the first move in non-PV nodes that do not give check):
+ *      - Futility: quiet moves when the static evaluation + margin cannot reach alpha
+ *      - Late move pruning: quiet moves after a number of moves (scaled with depth and whether the side is improving)
+ *      - History: quiet moves with a bad history score
+ *      - SEE: moves losing too much material in the exchange on their end square
+ *
+ * Every technique can be switched on or off and its margins tuned with UCI options. The number of times each
+ * technique pruned is counted for every search.
+ */
+public class ForwardPruning {
+    public enum Technique {
+        STATIC_NULL_MOVE("StaticNullMovePruning"),
+        RAZORING("Razoring"),
+        NULL_MOVE("NullMovePruning"),
+        PROBCUT("ProbCut"),
+        FUTILITY("FutilityPruning"),
+        LATE_MOVE("LateMovePruning"),
+        HISTORY("HistoryPruning"),
+        SEE("SEEPruning");
+
+        public final String optionName;
+        private boolean enabled;
+
+        Technique(String optionName){
+            this.optionName = optionName;
+            this.enabled = true;
+        }
+
+        public boolean isEnabled(){
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled){
+            this.enabled = enabled;
+        }
+    }
+
+    /**
+     * Tunable margins and depth limits, set with "setoption name [name] value [value]"
+     */
+    public enum Parameter {
+        STATIC_NULL_MOVE_MARGIN("StaticNullMoveMargin", 120, 0, 1000),          // per depth
+        RAZORING_DEPTH("RazoringDepth", 3, 0, 10),
+        RAZORING_MARGIN("RazoringMargin", 250, 0, 2000),                        // per depth
+        NULL_MOVE_DEPTH("NullMoveDepth", 3, 1, 10),
+        NULL_MOVE_REDUCTION("NullMoveReduction", 2, 1, 6),
+        NULL_MOVE_DEEP_REDUCTION("NullMoveDeepReduction", 3, 1, 6),             // reduction when depth > NullMoveDeepDepth
+        NULL_MOVE_DEEP_DEPTH("NullMoveDeepDepth", 6, 1, 20),
+        PROBCUT_DEPTH("ProbCutDepth", 7, 2, 20),
+        PROBCUT_MARGIN("ProbCutMargin", 300, 0, 2000),
+        PROBCUT_REDUCTION("ProbCutReduction", 4, 1, 10),
+        FUTILITY_MARGIN_1("FutilityMargin1", 200, 0, 2000),                     // futility margins at depth 1 - 3
+        FUTILITY_MARGIN_2("FutilityMargin2", 300, 0, 2000),
+        FUTILITY_MARGIN_3("FutilityMargin3", 500, 0, 2000),
+        LATE_MOVE_DEPTH("LateMovePruningDepth", 8, 0, 20),
+        LATE_MOVE_BASE("LateMovePruningBase", 3, 0, 50),                        // moves searched = base + depth^2
+        HISTORY_DEPTH("HistoryPruningDepth", 3, 0, 10),
+        HISTORY_MARGIN("HistoryPruningMargin", 512, 0, 49152),                  // per depth
+        SEE_DEPTH("SEEPruningDepth", 6, 0, 20),
+        SEE_QUIET_MARGIN("SEEQuietMargin", 60, 0, 1000),                        // per depth
+        SEE_CAPTURE_MARGIN("SEECaptureMargin", 100, 0, 1000);                   // per depth
+
+        public final String optionName;
+        public final int defaultValue;
+        public final int min;
+        public final int max;
+        private int value;
+
+        Parameter(String optionName, int defaultValue, int min, int max){
+            this.optionName = optionName;
+            this.defaultValue = defaultValue;
+            this.min = min;
+            this.max = max;
+            this.value = defaultValue;
+        }
+
+        public int get(){
+            return value;
+        }
+
+        public void set(int value){
+            this.value = Math.max(min, Math.min(value, max));
+        }
+    }
+
+    private final long[] prunedCount;
+
+    public ForwardPruning(){
+        this.prunedCount = new long[Technique.values().length];
+    }
+
+    public boolean isStaticNullMovePrunable(int depth, int staticEval, int beta){
+        return Technique.STATIC_NULL_MOVE.enabled
+                && staticEval - (Parameter.STATIC_NULL_MOVE_MARGIN.value * depth) >= beta;
+    }
+
+    /**
+     * @return true if the static evaluation is so far below alpha that the node should be verified by quiescence search
+     */
+    public boolean isRazoringCandidate(int depth, int staticEval, int alpha){
+        return Technique.RAZORING.enabled && depth <= Parameter.RAZORING_DEPTH.value
+                && staticEval + (Parameter.RAZORING_MARGIN.value * depth) < alpha;
+    }
+
+    public boolean isNullMoveAllowed(int depth){
+        return Technique.NULL_MOVE.enabled && depth >= Parameter.NULL_MOVE_DEPTH.value;
+    }
+
+    /**
+     * @return the depth reduction of the null move search (we can afford to reduce more if there is still a lot of depth to search)
+     */
+    public int getNullMoveReduction(int depth){
+        if(depth > Parameter.NULL_MOVE_DEEP_DEPTH.value){
+            return Parameter.NULL_MOVE_DEEP_REDUCTION.value;
+        }
+        return Parameter.NULL_MOVE_REDUCTION.value;
+    }
+
+    public boolean isProbCutAllowed(int depth){
+        return Technique.PROBCUT.enabled && depth >= Parameter.PROBCUT_DEPTH.value;
+    }
+
+    /**
+     * @return the bound a capture has to beat in the reduced ProbCut search
+     */
+    public int getProbCutBeta(int beta){
+        return beta + Parameter.PROBCUT_MARGIN.value;
+    }
+
+    public int getProbCutDepth(int depth){
+        return Math.max(depth - 1 - Parameter.PROBCUT_REDUCTION.value, 0);
+    }
+
+    /**
+     * @return true if no quiet move at this node is expected to raise the static evaluation above alpha
+     */
+    public boolean isFutile(int depth, int staticEval, int alpha){
+        if(!Technique.FUTILITY.enabled || depth > 3){
+            return false;
+        }
+        return staticEval + getFutilityMargin(depth) <= alpha;
+    }
+
+    private static int getFutilityMargin(int depth){
+        if(depth <= 1){
+            return Parameter.FUTILITY_MARGIN_1.value;
+        }
+        else if(depth == 2){
+            return Parameter.FUTILITY_MARGIN_2.value;
+        }
+        return Parameter.FUTILITY_MARGIN_3.value;
+    }
+
+    /**
+     * @param moveCount refers to the number of moves tried so far at the node, including the current move
+     * @param improving refers to whether the static evaluation has improved since the side's previous move
+     * @return true if enough moves have been searched at this depth for the remaining quiet moves to be pruned
+     */
+    public boolean isLateMove(int depth, int moveCount, boolean improving){
+        if(!Technique.LATE_MOVE.enabled || depth > Parameter.LATE_MOVE_DEPTH.value){
+            return false;
+        }
+        int moveLimit = Parameter.LATE_MOVE_BASE.value + (depth * depth);
+        if(!improving){
+            moveLimit /= 2;
+        }
+        return moveCount > moveLimit;
+    }
+
+    /**
+     * @param historyScore refers to the quiet and continuation history score of the move
+     */
+    public boolean hasBadHistory(int depth, int historyScore){
+        return Technique.HISTORY.enabled && depth <= Parameter.HISTORY_DEPTH.value
+                && historyScore < -(Parameter.HISTORY_MARGIN.value * depth);
+    }
+
+    public boolean isSEEPruningAllowed(int depth){
+        return Technique.SEE.enabled && depth <= Parameter.SEE_DEPTH.value;
+    }
+
+    /**
+     * @return the minimum static exchange evaluation of a move to be searched
+     */
+    public int getSEEThreshold(int depth, boolean isCapture){
+        return -depth * (isCapture ? Parameter.SEE_CAPTURE_MARGIN.value : Parameter.SEE_QUIET_MARGIN.value);
+    }
+
+    /**
+     * Counts a node or move pruned by a technique
+     */
+    public void recordPrune(Technique technique){
+        prunedCount[technique.ordinal()]++;
+    }
+
+    public long getPrunedCount(Technique technique){
+        return prunedCount[technique.ordinal()];
+    }
+
+    public void resetCounts(){
+        for(int i = 0; i < prunedCount.length; i++){
+            prunedCount[i] = 0;
+        }
+    }
+
+    /**
+     * @return the number of nodes / moves pruned by each technique in a single line
+     */
+    public String getSummary(){
+        StringBuilder summary = new StringBuilder();
+        for(Technique technique : Technique.values()){
+            if(summary.length() > 0){
+                summary.append(", ");
+            }
+            summary.append(technique.optionName).append(" ").append(prunedCount[technique.ordinal()]);
+            if(!technique.enabled){
+                summary.append(" (off)");
+            }
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Prints the UCI options to switch each technique and tune each parameter
+     */
+    public static void printOptions(){
+        for(Technique technique : Technique.values()){
+            System.out.println("option name " + technique.optionName + " type check default true");
+        }
+        for(Parameter parameter : Parameter.values()){
+            System.out.println("option name " + parameter.optionName + " type spin default " + parameter.defaultValue
+                    + " min " + parameter.min + " max " + parameter.max);
+        }
+    }
+
+    /**
+     * @param name refers to the UCI option name
+     * @param value refers to the value of the option
+     * @return true if the option belongs to forward pruning and has been set
+     */
+    public static boolean setOption(String name, String value){
+        for(Technique technique : Technique.values()){
+            if(technique.optionName.equals(name)){
+                technique.setEnabled(value.equals("true"));
+                return true;
+            }
+        }
+        for(Parameter parameter : Parameter.values()){
+            if(parameter.optionName.equals(name)){
+                try{
+                    parameter.set(Integer.parseInt(value));
+                }
+                catch (NumberFormatException numberFormatException){
+                    return false;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,382 @@
+import java.util.ArrayList;
+
+/**
+ * Proof-number search (PNS) mate solver used by "go mate N". Instead of searching every line to a fixed depth, the
+ * solver grows a tree towards the most-proving node:
+ *
+ *      - OR nodes (attacker to move) are proven if any child is proven, disproven if all children are disproven
+ *      - AND nodes (defender to move) are proven if all children are proven, disproven if any child is disproven
+ *
+ * The proof number of a node is the minimum number of leaves that have to be proven to prove the node, and the
+ * disproof number the minimum number of leaves that have to be disproven to disprove it. New nodes are initialised
+ * with the number of legal moves (mobility), so that lines where the defender has few replies are explored first.
+ * A line is disproven once the attacker has used all N moves without mating.
+ *
+ * Nodes are kept in a fixed-size node store (arrays indexed by node, children stored next to each other) sized by a
+ * memory limit. If the store is full before the root is solved, the result is unknown.
+ */
+public class MateSolver {
+    public enum Status {
+        PROVEN, DISPROVEN, UNKNOWN
+    }
+
+    /**
+     * Result of a mate search
+     */
+    public static class Result {
+        public final Status status;
+        public final ArrayList<Short> line;     // mating line (proven only), the defender's longest resistance
+        public final long nodes;                // number of nodes created in the node store
+
+        public Result(Status status, ArrayList<Short> line, long nodes){
+            this.status = status;
+            this.line = line;
+            this.nodes = nodes;
+        }
+
+        /**
+         * @return the number of moves of the attacker to mate along the line
+         */
+        public int getMateIn(){
+            return (line.size() + 1) / 2;
+        }
+    }
+
+    public static boolean ENABLED = true;
+    public static int MEMORY_MEGABYTES = 64;
+
+    // bytes of the node store used per node (proof, disproof, first child, child count and move)
+    private static final int BYTES_PER_NODE = 16;
+
+    private static final int INFINITE = Integer.MAX_VALUE / 2;
+    private static final int NO_CHILD = -1;
+
+    // check for "stop" and the search limits every 4096 expansions
+    private static final int STOP_CHECK_INTERVAL = 4095;
+
+    private Board board;
+    private final Search searcher;
+
+    // node store
+    private int capacity;
+    private int[] proof;
+    private int[] disproof;
+    private int[] firstChild;
+    private short[] childCount;
+    private short[] move;
+    private int nodeCount;
+
+    // nodes and moves made from the root to the node being expanded
+    private int[] path;
+    private Move[] pathMoves;
+    private int mateMoves;
+
+    /**
+     * @param board refers to the board of the position to solve
+     * @param searcher refers to the searcher which is polled for "stop" and its search limits, null if there are none
+     */
+    public MateSolver(Board board, Search searcher){
+        this.board = board;
+        this.searcher = searcher;
+        this.capacity = 0;
+    }
+
+    /**
+     * @param newBoard refers to the board of the next position to solve, the node store is kept
+     */
+    public void setBoard(Board newBoard){
+        this.board = newBoard;
+    }
+
+    /**
+     * Searches for a mate by the side to move within a number of moves
+     * @param mateMoves refers to the maximum number of moves of the side to move to deliver mate
+     * @return the result of the search: proven along with the mating line, disproven, or unknown if the memory limit
+     * was reached or the search was stopped
+     */
+    public Result solve(int mateMoves){
+        this.mateMoves = mateMoves;
+        allocate();
+
+        int maxPly = 2 * mateMoves;
+        path = new int[maxPly + 1];
+        pathMoves = new Move[maxPly + 1];
+
+        // root is an OR node
+        nodeCount = 1;
+        firstChild[0] = NO_CHILD;
+        childCount[0] = 0;
+        move[0] = 0;
+        int rootMoves = board.getAllLegalMoves().size();
+        proof[0] = (rootMoves == 0) ? INFINITE : 1;
+        disproof[0] = (rootMoves == 0) ? 0 : rootMoves;
+
+        long expansions = 0;
+        while(proof[0] != 0 && disproof[0] != 0){
+            if(searcher != null && (expansions & STOP_CHECK_INTERVAL) == 0 && searcher.isMateSolverStopped(nodeCount)){
+                break;
+            }
+            expansions++;
+
+            // walk down to the most-proving node
+            int node = 0;
+            int depth = 0;
+            path[0] = 0;
+            while(firstChild[node] != NO_CHILD){
+                node = selectChild(node, depth);
+                pathMoves[depth] = new Move(board, move[node]);
+                pathMoves[depth].makeMove();
+                depth++;
+                path[depth] = node;
+            }
+
+            boolean expanded = expand(node, depth);
+
+            // update the proof and disproof numbers of the ancestors, undoing the moves back to the root
+            for(int i = depth; i >= 0; i--){
+                if(expanded){
+                    updateNode(path[i], i);
+                }
+                if(i > 0){
+                    pathMoves[i - 1].unMake();
+                }
+            }
+
+            if(!expanded){
+                // node store is full
+                break;
+            }
+        }
+
+        if(proof[0] == 0){
+            return new Result(Status.PROVEN, getMatingLine(), nodeCount);
+        }
+        else if(disproof[0] == 0){
+            return new Result(Status.DISPROVEN, new ArrayList<>(), nodeCount);
+        }
+        return new Result(Status.UNKNOWN, new ArrayList<>(), nodeCount);
+    }
+
+    /**
+     * Allocates the node store for the memory limit, reusing the previous node store if its size is unchanged
+     */
+    private void allocate(){
+        int newCapacity = (int) Math.min(((long) MEMORY_MEGABYTES * 1000000) / BYTES_PER_NODE, Integer.MAX_VALUE - 8);
+        if(newCapacity == capacity){
+            return;
+        }
+        capacity = newCapacity;
+        proof = new int[capacity];
+        disproof = new int[capacity];
+        firstChild = new int[capacity];
+        childCount = new short[capacity];
+        move = new short[capacity];
+    }
+
+    /**
+     * @param depth refers to the ply of the node from the root (even plies are OR nodes)
+     * @return the child with the smallest proof number at an OR node, or the smallest disproof number at an AND node
+     */
+    private int selectChild(int node, int depth){
+        boolean isOrNode = (depth % 2 == 0);
+        int first = firstChild[node];
+        int best = first;
+        for(int child = first + 1; child < first + childCount[node]; child++){
+            if(isOrNode ? proof[child] < proof[best] : disproof[child] < disproof[best]){
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Creates the children of a node and evaluates each of them. The board is in the position of the node
+     * @param depth refers to the ply of the node from the root
+     * @return false if there is not enough space left in the node store
+     */
+    private boolean expand(int node, int depth){
+        ArrayList<Short> moves = board.getAllLegalMoves();
+        boolean isOrNode = (depth % 2 == 0);
+
+        // number of moves the attacker has made once a child of an OR node is reached
+        boolean isLastAttackerMove = isOrNode && (depth / 2) + 1 >= mateMoves;
+
+        if(nodeCount + moves.size() > capacity){
+            return false;
+        }
+
+        int first = nodeCount;
+        int count = 0;
+        for(Short encodedMove : moves){
+            Move childMove = new Move(board, encodedMove);
+            childMove.makeMove();
+
+            int childProof, childDisproof;
+            boolean isChecked = board.isKingChecked();
+            if(isLastAttackerMove && !isChecked){
+                // the attacker's moves are used up and this move cannot mate, it does not need to be stored
+                childMove.unMake();
+                continue;
+            }
+
+            int replies = board.getAllLegalMoves().size();
+            if(replies == 0){
+                // checkmate wins for the attacker (mated defender) and loses for the defender (mated attacker),
+                // stalemate is a draw
+                boolean attackerWins = isOrNode && isChecked;
+                childProof = attackerWins ? 0 : INFINITE;
+                childDisproof = attackerWins ? INFINITE : 0;
+            }
+            else if(isLastAttackerMove){
+                // a check which is not mate with no moves left
+                childProof = INFINITE;
+                childDisproof = 0;
+            }
+            else if(isOrNode){
+                // defender to move, all replies have to be refuted
+                childProof = replies;
+                childDisproof = 1;
+            }
+            else{
+                // attacker to move, any move may mate
+                childProof = 1;
+                childDisproof = replies;
+            }
+            childMove.unMake();
+
+            int child = first + count;
+            proof[child] = childProof;
+            disproof[child] = childDisproof;
+            firstChild[child] = NO_CHILD;
+            childCount[child] = 0;
+            move[child] = encodedMove;
+            count++;
+        }
+
+        nodeCount += count;
+        firstChild[node] = first;
+        childCount[node] = (short) count;
+        if(count == 0){
+            // no move of the attacker is a check on the last move, the node is disproven
+            proof[node] = INFINITE;
+            disproof[node] = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Sets the proof and disproof numbers of an expanded node from its children
+     */
+    private void updateNode(int node, int depth){
+        int count = childCount[node];
+        if(firstChild[node] == NO_CHILD || count == 0){
+            return;
+        }
+
+        boolean isOrNode = (depth % 2 == 0);
+        int first = firstChild[node];
+        int minimum = INFINITE;
+        int sum = 0;
+        for(int child = first; child < first + count; child++){
+            int minimised = isOrNode ? proof[child] : disproof[child];
+            int summed = isOrNode ? disproof[child] : proof[child];
+            minimum = Math.min(minimum, minimised);
+            sum = Math.min(sum + summed, INFINITE);
+        }
+
+        if(isOrNode){
+            proof[node] = minimum;
+            disproof[node] = sum;
+        }
+        else{
+            proof[node] = sum;
+            disproof[node] = minimum;
+        }
+    }
+
+    /**
+     * Follows the proof tree from the root, where the attacker plays the fastest mate and the defender the longest
+     * resistance
+     * @return the mating line
+     */
+    private ArrayList<Short> getMatingLine(){
+        ArrayList<Short> line = new ArrayList<>();
+        int node = 0;
+        int depth = 0;
+        while(firstChild[node] != NO_CHILD && childCount[node] > 0){
+            boolean isOrNode = (depth % 2 == 0);
+            int first = firstChild[node];
+            int best = NO_CHILD;
+            int bestLength = 0;
+            for(int child = first; child < first + childCount[node]; child++){
+                if(proof[child] != 0){
+                    continue;
+                }
+                int length = getMateLength(child, depth + 1);
+                if(best == NO_CHILD || (isOrNode ? length < bestLength : length > bestLength)){
+                    best = child;
+                    bestLength = length;
+                }
+            }
+            line.add(move[best]);
+            node = best;
+            depth++;
+        }
+        return line;
+    }
+
+    /**
+     * @return the number of plies to mate from a proven node
+     */
+    private int getMateLength(int node, int depth){
+        if(firstChild[node] == NO_CHILD){
+            // the defender is mated
+            return 0;
+        }
+        boolean isOrNode = (depth % 2 == 0);
+        int first = firstChild[node];
+        int length = isOrNode ? INFINITE : 0;
+        for(int child = first; child < first + childCount[node]; child++){
+            if(proof[child] != 0){
+                continue;
+            }
+            int childLength = getMateLength(child, depth + 1) + 1;
+            length = isOrNode ? Math.min(length, childLength) : Math.max(length, childLength);
+        }
+        return length;
+    }
+
+    /**
+     * Unit Testing
+     */
+    public static void main(String[] args) {
+        String[] positions = {
+                "r1bqkbnr/pppp1ppp/2n5/4p3/2B1P3/5Q2/PPPP1PPP/RNB1K1NR w KQkq - 0 1",      // mate in 1 (Qxf7#)
+                "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1",                                    // mate in 1 (Rd8#)
+                "2q1nk1r/4Rp2/1ppp1P2/6Pp/3p1B2/3P3P/PPP1Q3/6K1 w - - 0 1",                 // mate in 5
+        };
+        int[] mateMoves = {1, 1, 5};
+
+        for(int i = 0; i < positions.length; i++){
+            Board board = new Board();
+            board.init(positions[i]);
+            MateSolver solver = new MateSolver(board, null);
+
+            long start = System.currentTimeMillis();
+            Result result = solver.solve(mateMoves[i]);
+            long time = System.currentTimeMillis() - start;
+
+            StringBuilder line = new StringBuilder();
+            for(Short encodedMove : result.line){
+                line.append(MoveGenerator.toString(encodedMove)).append(" ");
+            }
+            System.out.println(result.status + " mate " + (result.status == Status.PROVEN ? result.getMateIn() : "-")
+                    + " nodes " + result.nodes + " time " + time + " pv " + line);
+        }
+
+        // no mate in 1 in the starting position
+        Board board = new Board();
+        board.init(FENUtilities.startFEN);
+        System.out.println(new MateSolver(board, null).solve(1).status);       // expected DISPROVEN
+    }
+}
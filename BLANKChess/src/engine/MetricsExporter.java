@@ -0,0 +1,136 @@
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports the EngineMetrics in the Prometheus text format, either or both of:
+ *
+ *      - a text file written periodically to a local path (i.e. for the node exporter's textfile collector). The file
+ *        is written next to the path first and then moved over it, so that it is never read half written
+ *      - an HTTP endpoint on localhost only: http://127.0.0.1:<port>/metrics
+ *
+ * Both run on daemon threads, away from the search.
+ *
+ *          setoption name MetricsFile value /var/lib/node_exporter/blank.prom      (<empty> to disable)
+ *          setoption name MetricsInterval value 10                                 (seconds)
+ *          setoption name MetricsPort value 9100                                   (0 to disable)
+ */
+public class MetricsExporter {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    public static int FILE_INTERVAL_SECONDS = 10;
+
+    private static ScheduledExecutorService fileWriter;
+    private static String exportFileName;
+    private static HttpServer httpServer;
+    private static ExecutorService httpExecutor;
+
+    /**
+     * Writes the metrics to a file every FILE_INTERVAL_SECONDS, replacing the previous file exporter
+     * @param fileName refers to the path of the file, null or empty to stop writing the file
+     */
+    public static synchronized void startFileExport(String fileName){
+        stopFileExport();
+        exportFileName = fileName;
+        if(fileName == null || fileName.isEmpty()){
+            return;
+        }
+
+        Path path = Paths.get(fileName).toAbsolutePath();
+        fileWriter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-file-exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        fileWriter.scheduleAtFixedRate(() -> {
+            try{
+                writeFile(path);
+            }
+            catch(IOException e){
+                System.err.println("Metrics file " + path + " could not be written: " + e.getMessage());
+            }
+        }, 0, FILE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Changes how often the file is written, an exporter already running is restarted with the new interval
+     * @param seconds refers to the time between two writes of the file
+     */
+    public static synchronized void setFileInterval(int seconds){
+        FILE_INTERVAL_SECONDS = Math.max(1, seconds);
+        if(fileWriter != null){
+            startFileExport(exportFileName);
+        }
+    }
+
+    public static synchronized void stopFileExport(){
+        if(fileWriter != null){
+            fileWriter.shutdownNow();
+            fileWriter = null;
+        }
+    }
+
+    /**
+     * Writes the metrics to a temporary file beside the path, then moves it over the path
+     */
+    public static void writeFile(Path path) throws IOException {
+        Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temporaryPath, EngineMetrics.toPrometheusText().getBytes(StandardCharsets.UTF_8));
+        try{
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(IOException e){
+            // file systems without an atomic move
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Serves the metrics on http://127.0.0.1:port/metrics, replacing the previous server
+     * @param port refers to the port of the endpoint, 0 to stop the server
+     */
+    public static synchronized void startHttpServer(int port) throws IOException {
+        stopHttpServer();
+        if(port <= 0){
+            return;
+        }
+
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext("/metrics", exchange -> {
+            byte[] response = EngineMetrics.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, response.length);
+            try(OutputStream body = exchange.getResponseBody()){
+                body.write(response);
+            }
+        });
+        httpExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-http-exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpServer.setExecutor(httpExecutor);
+        httpServer.start();
+    }
+
+    public static synchronized void stopHttpServer(){
+        if(httpServer != null){
+            httpServer.stop(0);
+            httpServer = null;
+            httpExecutor.shutdownNow();
+            httpExecutor = null;
+        }
+    }
+}
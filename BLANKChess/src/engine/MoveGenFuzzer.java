@@ -0,0 +1,444 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Randomised differential tester of the move generation.
+ *
+ * Random legal games are played from random FENs (and from the perft suite positions). At every ply:
+ *
+ *      - the legal moves and captures of the board (getAllLegalMoves() / getAllCaptures()) are compared with those of
+ *        another generator, by default the independent ReferenceMoveGenerator
+ *      - after makeMove() and after unMake(), the incremental state of the board (zobrist hash, piece lists, king
+ *        positions, castling and enpassant) is compared with the same state recomputed from scratch
+ *
+ * A failure is shrunk by removing pieces, castling rights and enpassant from its position for as long as the
+ * position still fails, and is reported as a minimal FEN along with the failing move.
+ */
+public class MoveGenFuzzer {
+    /**
+     * Move generator compared with the board, moves are given in UCI notation (i.e. "e2e4", "e7e8q")
+     */
+    public interface LegalMoveGenerator {
+        Set<String> getLegalMoves(String FEN);
+        Set<String> getCaptures(String FEN);
+    }
+
+    /**
+     * A position where the board and the other generator disagree, or where the board state drifts after a move
+     */
+    public static class Failure {
+        public final String FEN;
+        public final String move;       // move made when the state drifted, null for a move generation mismatch
+        public final String message;
+
+        public Failure(String FEN, String move, String message){
+            this.FEN = FEN;
+            this.move = move;
+            this.message = message;
+        }
+
+        @Override
+        public String toString(){
+            return "FEN: " + FEN + ((move != null) ? "\nMove: " + move : "") + "\n" + message;
+        }
+    }
+
+    private static final char EMPTY = '.';
+    private static final String RANDOM_PIECES = "PPPPNNBBRRQ";
+
+    private final LegalMoveGenerator generator;
+    private final Random random;
+    private final ArrayList<String> startPositions;
+
+    public long positionsChecked;
+    public long movesChecked;
+
+    /**
+     * @param generator refers to the move generator compared with the board
+     * @param seed refers to the seed of the random games, a failure is reproduced with the same seed
+     */
+    public MoveGenFuzzer(LegalMoveGenerator generator, long seed){
+        this.generator = generator;
+        this.random = new Random(seed);
+        this.startPositions = new ArrayList<>();
+        try{
+            for(PerftSuite.SuitePosition position : PerftSuite.load(PerftSuite.DEFAULT_SUITE)){
+                startPositions.add(position.FEN);
+            }
+        }
+        catch(IOException e){
+            startPositions.add(FENUtilities.startFEN);
+        }
+    }
+
+    /**
+     * Plays random games and checks every position and move along them
+     * @param games refers to the number of games played
+     * @param maxPlies refers to the maximum number of plies of a game
+     * @return the first failure shrunk to a minimal position, null if there is none
+     */
+    public Failure run(int games, int maxPlies){
+        for(int game = 0; game < games; game++){
+            String FEN = (random.nextInt(4) == 0) ? startPositions.get(random.nextInt(startPositions.size())) : randomFEN();
+            Board board = new Board();
+            board.init(FEN);
+            StringBuilder history = new StringBuilder();
+
+            for(int ply = 0; ply < maxPlies; ply++){
+                String currentFEN = FENUtilities.convertBoardToFEN(board);
+                String message = checkMoveGeneration(board, currentFEN);
+                ArrayList<Short> moves = null;
+                short encodedMove = 0;
+                if(message == null){
+                    moves = board.getAllLegalMoves();
+                    if(moves.isEmpty()){
+                        break;
+                    }
+                    encodedMove = moves.get(random.nextInt(moves.size()));
+                    message = checkMove(board, encodedMove);
+                }
+
+                if(message != null){
+                    String move = (encodedMove != 0) ? MoveGenerator.toString(encodedMove) : null;
+                    Failure failure = checkPosition(currentFEN);
+                    if(failure == null){
+                        // depends on the moves played before the position, it cannot be reproduced from the FEN alone
+                        return new Failure(FEN, move, message + "\nafter the moves:" + history);
+                    }
+                    return shrink(failure);
+                }
+
+                new Move(board, encodedMove).makeMove();
+                history.append(' ').append(MoveGenerator.toString(encodedMove));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks the move generation of a position, along with making and unmaking every legal move, on a new board
+     * @return the failure of the position, null if there is none
+     */
+    public Failure checkPosition(String FEN){
+        try{
+            Board board = new Board();
+            board.init(FEN);
+            String message = checkMoveGeneration(board, FEN);
+            if(message != null){
+                return new Failure(FEN, null, message);
+            }
+            for(Short encodedMove : board.getAllLegalMoves()){
+                message = checkMove(board, encodedMove);
+                if(message != null){
+                    return new Failure(FEN, MoveGenerator.toString(encodedMove), message);
+                }
+            }
+        }
+        catch(RuntimeException e){
+            return new Failure(FEN, null, "exception: " + e);
+        }
+        return null;
+    }
+
+    /**
+     * Compares the legal moves and captures of the board with the other generator
+     * @return the differences, null if there are none
+     */
+    private String checkMoveGeneration(Board board, String FEN){
+        positionsChecked++;
+        try{
+            String message = compare("legal moves", board.getAllLegalMoves(), generator.getLegalMoves(FEN));
+            if(message == null){
+                message = compare("captures", board.getAllCaptures(), generator.getCaptures(FEN));
+            }
+            return message;
+        }
+        catch(RuntimeException e){
+            return "exception: " + e;
+        }
+    }
+
+    private static String compare(String name, ArrayList<Short> boardMoves, Set<String> expectedMoves){
+        Set<String> moves = new TreeSet<>();
+        for(Short encodedMove : boardMoves){
+            if(!moves.add(MoveGenerator.toString(encodedMove))){
+                return name + ": duplicate move " + MoveGenerator.toString(encodedMove);
+            }
+        }
+        if(moves.equals(expectedMoves)){
+            return null;
+        }
+
+        Set<String> missing = new TreeSet<>(expectedMoves);
+        missing.removeAll(moves);
+        Set<String> extra = new TreeSet<>(moves);
+        extra.removeAll(expectedMoves);
+        return name + ": missing " + missing + " extra " + extra;
+    }
+
+    /**
+     * Makes and unmakes a move, checking the board state after each of them. The board is left unchanged
+     * @return the first difference found, null if there is none
+     */
+    private String checkMove(Board board, short encodedMove){
+        movesChecked++;
+        try{
+            String FEN = FENUtilities.convertBoardToFEN(board);
+            long zobristHash = board.getZobristHash();
+
+            Move move = new Move(board, encodedMove);
+            move.makeMove();
+            String message = StateVerifier.checkState(board, "after makeMove");
+            move.unMake();
+            if(message != null){
+                return message;
+            }
+
+            message = StateVerifier.checkState(board, "after unMake");
+            if(message == null && !FENUtilities.convertBoardToFEN(board).equals(FEN)){
+                message = "after unMake: position " + FENUtilities.convertBoardToFEN(board) + " is not restored";
+            }
+            if(message == null && board.getZobristHash() != zobristHash){
+                message = "after unMake: zobrist hash is not restored";
+            }
+            return message;
+        }
+        catch(RuntimeException e){
+            return "exception: " + e;
+        }
+    }
+
+    /**
+     * Removes pieces (other than kings), castling rights and enpassant from the position of a failure for as long as
+     * the position stays valid and still fails
+     * @return the failure of the smallest position found
+     */
+    public Failure shrink(Failure failure){
+        boolean shrunk = true;
+        while(shrunk){
+            shrunk = false;
+            for(String candidate : getSmallerPositions(failure.FEN)){
+                if(ReferenceMoveGenerator.isOpponentInCheck(candidate)){
+                    continue;
+                }
+                Failure candidateFailure = checkPosition(candidate);
+                if(candidateFailure != null){
+                    failure = candidateFailure;
+                    shrunk = true;
+                    break;
+                }
+            }
+        }
+        return failure;
+    }
+
+    /**
+     * @return the positions with one piece, castling right or enpassant less than the position
+     */
+    private static ArrayList<String> getSmallerPositions(String FEN){
+        ArrayList<String> positions = new ArrayList<>();
+        String[] splitFEN = FEN.split(" ");
+        char[] squares = toSquares(splitFEN[0]);
+
+        for(int square = 0; square < 64; square++){
+            if(squares[square] == EMPTY || Character.toLowerCase(squares[square]) == 'k'){
+                continue;
+            }
+            char[] smaller = squares.clone();
+            smaller[square] = EMPTY;
+            positions.add(toFEN(smaller, splitFEN[1], getValidCastling(smaller, splitFEN[2]),
+                    getValidEnpassant(smaller, splitFEN[1], splitFEN[3])));
+        }
+        if(!splitFEN[2].equals("-")){
+            for(int i = 0; i < splitFEN[2].length(); i++){
+                String castling = splitFEN[2].substring(0, i) + splitFEN[2].substring(i + 1);
+                positions.add(toFEN(squares, splitFEN[1], castling.isEmpty() ? "-" : castling, splitFEN[3]));
+            }
+        }
+        if(!splitFEN[3].equals("-")){
+            positions.add(toFEN(squares, splitFEN[1], splitFEN[2], "-"));
+        }
+        return positions;
+    }
+
+    private static char[] toSquares(String placement){
+        char[] squares = new char[64];
+        int square = 0;
+        for(char c : placement.toCharArray()){
+            if(c == '/'){
+                continue;
+            }
+            if(Character.isDigit(c)){
+                for(int i = 0; i < c - '0'; i++){
+                    squares[square++] = EMPTY;
+                }
+            }
+            else{
+                squares[square++] = c;
+            }
+        }
+        return squares;
+    }
+
+    private static String toFEN(char[] squares, String turn, String castling, String enpassant){
+        StringBuilder FEN = new StringBuilder();
+        for(int row = 0; row < 8; row++){
+            int emptySquares = 0;
+            for(int col = 0; col < 8; col++){
+                char piece = squares[row * 8 + col];
+                if(piece == EMPTY){
+                    emptySquares++;
+                    continue;
+                }
+                if(emptySquares > 0){
+                    FEN.append(emptySquares);
+                    emptySquares = 0;
+                }
+                FEN.append(piece);
+            }
+            if(emptySquares > 0){
+                FEN.append(emptySquares);
+            }
+            if(row < 7){
+                FEN.append('/');
+            }
+        }
+        return FEN + " " + turn + " " + castling + " " + enpassant + " 0 1";
+    }
+
+    /**
+     * @return the castling rights whose king and rook are on their starting squares
+     */
+    private static String getValidCastling(char[] squares, String castling){
+        StringBuilder valid = new StringBuilder();
+        if(castling.contains("K") && squares[60] == 'K' && squares[63] == 'R') valid.append('K');
+        if(castling.contains("Q") && squares[60] == 'K' && squares[56] == 'R') valid.append('Q');
+        if(castling.contains("k") && squares[4] == 'k' && squares[7] == 'r') valid.append('k');
+        if(castling.contains("q") && squares[4] == 'k' && squares[0] == 'r') valid.append('q');
+        return (valid.length() == 0) ? "-" : valid.toString();
+    }
+
+    /**
+     * @return the enpassant square if the pawn which double pushed past it is still there, else "-"
+     */
+    private static String getValidEnpassant(char[] squares, String turn, String enpassant){
+        if(enpassant.equals("-")){
+            return "-";
+        }
+        int square = FENUtilities.convertRankAndFileToPosition(enpassant);
+        boolean isWhiteTurn = turn.equals("w");
+        int pawnSquare = isWhiteTurn ? square + 8 : square - 8;
+        return (squares[pawnSquare] == (isWhiteTurn ? 'p' : 'P')) ? enpassant : "-";
+    }
+
+    /**
+     * @return a random valid position: both kings, up to 14 other pieces, castling rights and enpassant if possible
+     */
+    private String randomFEN(){
+        while(true){
+            char[] squares = new char[64];
+            Arrays.fill(squares, EMPTY);
+
+            // kings are placed on their castling squares more often to test castling
+            int whiteKing = (random.nextInt(3) == 0) ? 60 : random.nextInt(64);
+            int blackKing = (random.nextInt(3) == 0) ? 4 : random.nextInt(64);
+            if(Math.abs(blackKing / 8 - whiteKing / 8) <= 1 && Math.abs(blackKing % 8 - whiteKing % 8) <= 1){
+                continue;
+            }
+            squares[whiteKing] = 'K';
+            squares[blackKing] = 'k';
+
+            int pieceCount = random.nextInt(15);
+            for(int i = 0; i < pieceCount; i++){
+                char piece = RANDOM_PIECES.charAt(random.nextInt(RANDOM_PIECES.length()));
+                if(random.nextBoolean()){
+                    piece = Character.toLowerCase(piece);
+                }
+                int square = random.nextInt(64);
+                boolean isPawn = Character.toLowerCase(piece) == 'p';
+                if(squares[square] != EMPTY || (isPawn && (square < 8 || square >= 56))){
+                    continue;
+                }
+                squares[square] = piece;
+            }
+            // rooks on their castling squares
+            for(int square : new int[]{0, 7, 56, 63}){
+                if(squares[square] == EMPTY && random.nextInt(3) == 0){
+                    squares[square] = (square < 8) ? 'r' : 'R';
+                }
+            }
+
+            String turn = random.nextBoolean() ? "w" : "b";
+            String castling = getValidCastling(squares, "KQkq");
+
+            // enpassant square behind a pawn which may have double pushed
+            String enpassant = "-";
+            boolean isWhiteTurn = turn.equals("w");
+            for(int col = 0; col < 8 && random.nextInt(3) == 0; col++){
+                int target = isWhiteTurn ? 16 + col : 40 + col;
+                int pawn = isWhiteTurn ? target + 8 : target - 8;
+                int from = isWhiteTurn ? target - 8 : target + 8;
+                if(squares[pawn] == (isWhiteTurn ? 'p' : 'P') && squares[target] == EMPTY && squares[from] == EMPTY){
+                    enpassant = FENUtilities.convertIndexToRankAndFile(target);
+                    break;
+                }
+            }
+
+            String FEN = toFEN(squares, turn, castling, enpassant);
+            if(!ReferenceMoveGenerator.isOpponentInCheck(FEN)){
+                return FEN;
+            }
+        }
+    }
+
+    /**
+     * Runs the fuzzer from the command line against the reference generator, exiting with status 1 on a failure
+     *
+     *          java MoveGenFuzzer [seed <seed>] [games <games>] [plies <max plies>]
+     */
+    public static void main(String[] args) {
+        long seed = System.currentTimeMillis();
+        int games = 2000;
+        int maxPlies = 100;
+        for(int i = 0; i + 1 < args.length; i += 2){
+            switch(args[i]){
+                case "seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "games":
+                    games = Integer.parseInt(args[i + 1]);
+                    break;
+                case "plies":
+                    maxPlies = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        // the reference generator must agree with the known perft results before it is trusted
+        ReferenceMoveGenerator reference = new ReferenceMoveGenerator();
+        if(reference.perft(FENUtilities.startFEN, 4) != 197281 || reference.perft(FENUtilities.trickyFEN, 3) != 97862){
+            System.out.println("Reference move generator fails perft");
+            System.exit(1);
+        }
+
+        MoveGenFuzzer fuzzer = new MoveGenFuzzer(reference, seed);
+        long start = System.currentTimeMillis();
+        Failure failure = fuzzer.run(games, maxPlies);
+        long time = System.currentTimeMillis() - start;
+
+        System.out.println("Seed: " + seed + ", Games: " + games + ", Positions: " + fuzzer.positionsChecked
+                + ", Moves: " + fuzzer.movesChecked + ", Time Elapsed: " + ((float) time / 1000) + " seconds");
+        if(failure != null){
+            System.out.println("FAILED");
+            System.out.println(failure);
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Move ordering heuristics learnt during the search from moves causing beta cut-offs:
+ *
+ *      - Quiet history:        score of a quiet move indexed by the moving piece (side and type) and its end square
+ *      - Continuation history: score of a quiet move following the move made 1 ply and 2 plies before it
+ *      - Capture history:      score of a capture indexed by the moving piece, end square and captured piece type
+ *      - Counter moves:        the quiet move which refuted the opponent's previous move
+ *
+ * History scores use gravity updates: a bonus is given to the move causing a cut-off and a malus to the moves searched
+ * before it. The update shrinks as a score gets closer to the limit, keeping all scores within [-MAX_HISTORY, MAX_HISTORY]
+ */
+public class MoveHistory {
+    public static final int NO_PIECE = -1;
+
+    // 6 piece types for each side
+    private static final int PIECE_COUNT = 12;
+    private static final int PIECE_TYPE_COUNT = 6;
+
+    private static final int MAX_HISTORY = 16384;
+    private static final int MAX_BONUS = 1600;
+
+    private final int[][] quietHistory;               // [piece][end]
+    private final int[][] continuationHistory;        // [previous piece * 64 + previous end][piece * 64 + end]
+    private final int[][][] captureHistory;           // [piece][end][captured piece type]
+    private final short[][] counterMoves;             // [previous piece][previous end]
+
+    public MoveHistory(){
+        this.quietHistory = new int[PIECE_COUNT][64];
+        this.continuationHistory = new int[PIECE_COUNT * 64][PIECE_COUNT * 64];
+        this.captureHistory = new int[PIECE_COUNT][64][PIECE_TYPE_COUNT];
+        this.counterMoves = new short[PIECE_COUNT][64];
+    }
+
+    /**
+     * @param piece refers to the piece
+     * @return index of the piece, where white pieces are indexed 0 - 5 and black pieces 6 - 11
+     */
+    public static int getPieceIndex(Piece piece){
+        return (piece.isWhite() ? 0 : PIECE_TYPE_COUNT) + piece.getType().ordinal();
+    }
+
+    /**
+     * @param depth refers to the depth of the node where the cut-off occurred
+     * @return the history bonus for a cut-off at the depth (deeper cut-offs are more reliable)
+     */
+    public static int getBonus(int depth){
+        return Math.min(16 * depth * depth, MAX_BONUS);
+    }
+
+    /**
+     * @param piece refers to the index of the moving piece
+     * @param end refers to the end square of the move
+     * @param previousPiece refers to the index of the piece moved 1 ply before (NO_PIECE if there is none)
+     * @param previousEnd refers to the end square of the move 1 ply before
+     * @param followUpPiece refers to the index of the piece moved 2 plies before (NO_PIECE if there is none)
+     * @param followUpEnd refers to the end square of the move 2 plies before
+     * @return the combined quiet and continuation history score of a quiet move
+     */
+    public int getQuietScore(int piece, int end, int previousPiece, int previousEnd, int followUpPiece, int followUpEnd){
+        int score = quietHistory[piece][end];
+        int moveIndex = piece * 64 + end;
+        if(previousPiece != NO_PIECE){
+            score += continuationHistory[previousPiece * 64 + previousEnd][moveIndex];
+        }
+        if(followUpPiece != NO_PIECE){
+            score += continuationHistory[followUpPiece * 64 + followUpEnd][moveIndex];
+        }
+        return score;
+    }
+
+    /**
+     * Updates the quiet and continuation history of a quiet move
+     * @param bonus refers to the bonus (positive) or malus (negative) to apply
+     */
+    public void updateQuiet(int piece, int end, int previousPiece, int previousEnd, int followUpPiece, int followUpEnd, int bonus){
+        quietHistory[piece][end] = applyGravity(quietHistory[piece][end], bonus);
+        int moveIndex = piece * 64 + end;
+        if(previousPiece != NO_PIECE){
+            int[] continuation = continuationHistory[previousPiece * 64 + previousEnd];
+            continuation[moveIndex] = applyGravity(continuation[moveIndex], bonus);
+        }
+        if(followUpPiece != NO_PIECE){
+            int[] continuation = continuationHistory[followUpPiece * 64 + followUpEnd];
+            continuation[moveIndex] = applyGravity(continuation[moveIndex], bonus);
+        }
+    }
+
+    public int getCaptureScore(int piece, int end, int capturedType){
+        return captureHistory[piece][end][capturedType];
+    }
+
+    /**
+     * Updates the capture history of a capture
+     * @param bonus refers to the bonus (positive) or malus (negative) to apply
+     */
+    public void updateCapture(int piece, int end, int capturedType, int bonus){
+        captureHistory[piece][end][capturedType] = applyGravity(captureHistory[piece][end][capturedType], bonus);
+    }
+
+    /**
+     * @return the quiet move that refuted the previous move, 0 if there is none
+     */
+    public short getCounterMove(int previousPiece, int previousEnd){
+        if(previousPiece == NO_PIECE){
+            return 0;
+        }
+        return counterMoves[previousPiece][previousEnd];
+    }
+
+    public void setCounterMove(int previousPiece, int previousEnd, short move){
+        if(previousPiece != NO_PIECE){
+            counterMoves[previousPiece][previousEnd] = move;
+        }
+    }
+
+    /**
+     * Halves all history scores so that information from previous searches has less influence than the current search
+     */
+    public void age(){
+        for(int[] scores : quietHistory){
+            for(int i = 0; i < scores.length; i++){
+                scores[i] /= 2;
+            }
+        }
+        for(int[] scores : continuationHistory){
+            for(int i = 0; i < scores.length; i++){
+                scores[i] /= 2;
+            }
+        }
+        for(int[][] endSquares : captureHistory){
+            for(int[] scores : endSquares){
+                for(int i = 0; i < scores.length; i++){
+                    scores[i] /= 2;
+                }
+            }
+        }
+    }
+
+    private static int applyGravity(int score, int bonus){
+        return score + bonus - (score * Math.abs(bonus)) / MAX_HISTORY;
+    }
+}
@@ -17,10 +17,17 @@ public class MoveOrdering {
     private static final int QUEEN_PROMOTION_BONUS = 9000;
     private static final int FIRST_KILLER = 8000;
     private static final int SECOND_KILLER = 7000;
+    private static final int COUNTER_MOVE_BONUS = 6000;
     private static final int CASTLING_BONUS = 3000;
     private static final int KNIGHT_PROMOTION_BONUS = 1000;
     private static final int UNINTERESTING_PROMOTION = 300;
     private static final int SILENT_MOVE_PENALTY = -1000;
+    private static final int LOSING_CAPTURE_PENALTY = -8000; // captures losing material (SEE < 0) are searched after quiet moves
+
+    // History scores are scaled down to stay within the range of their move category
+    // (quiet history: +-6144 around the silent move penalty, capture history: +-32 to reorder captures of similar MVV-LVA)
+    private static final int QUIET_HISTORY_SCALE = 8;
+    private static final int CAPTURE_HISTORY_SCALE = 512;
 
     private static final int[][] MVV_LVA_SCORES = {
             {0, 0, 0, 0, 0, 0, 0},          // victim K, attacker K, Q, R, B, N, P, None
@@ -32,16 +39,48 @@ public class MoveOrdering {
             {0, 0, 0, 0, 0, 0, 0},          // victim None, attacker K, Q, R, B, N, P, None
     };
 
+    /**
+     * Orders the moves from the most to the least promising move. The score of each move is calculated once and stored in
+     * the move score array of the ply (searcher.moveScores[searchPly]), which stays aligned with the ordered move list
+     * @return the ordered move list
+     */
     public static ArrayList<Short> orderMoves(ArrayList<Short> moves, Search searcher, int searchPly, short ttMove) {
-        moves.sort((move1, move2) -> {
-            int moveScore1 = getMoveScore(move1, searcher, searchPly, ttMove);
-            int moveScore2 = getMoveScore(move2, searcher, searchPly, ttMove);
-
-            return Integer.compare(moveScore2, moveScore1);
-        });
+        int[] scores = searcher.moveScores[searchPly];
+        for(int i = 0; i < moves.size(); i++){
+            scores[i] = getMoveScore(moves.get(i), searcher, searchPly, ttMove);
+        }
+        sortByScore(moves, scores);
         return moves;
     }
 
+    /**
+     * @param quiescenceScore refers to the score of a move given by quiescence move ordering
+     * @return true if the move is a capture which loses material in the exchange (only quiet promotions and
+     * captures are scored in quiescence, all of which are scored positively unless they lose material)
+     */
+    public static boolean isLosingCapture(int quiescenceScore){
+        return quiescenceScore < 0;
+    }
+
+    /**
+     * Sorts the moves and their scores from the highest to lowest score. Insertion sort keeps moves with
+     * equal scores in the order generated and the move lists are short
+     */
+    private static void sortByScore(ArrayList<Short> moves, int[] scores){
+        for(int i = 1; i < moves.size(); i++){
+            Short move = moves.get(i);
+            int score = scores[i];
+            int j = i - 1;
+            while(j >= 0 && scores[j] < score){
+                scores[j + 1] = scores[j];
+                moves.set(j + 1, moves.get(j));
+                j--;
+            }
+            scores[j + 1] = score;
+            moves.set(j + 1, move);
+        }
+    }
+
     private static int getMoveScore(Short move, Search searcher, int ply, short ttMove){
         Board board = searcher.board;
 
@@ -84,7 +123,9 @@ public class MoveOrdering {
                 // enpassant capture
                 score += MVV_LVA_SCORES[PAWN_INDEX][PAWN_INDEX];  // pawn (victim) - pawn (attacker) capture
             }
-            score += CAPTURE_BONUS; // prioritise captures
+            score += searcher.history.getCaptureScore(MoveHistory.getPieceIndex(startPiece), end, searcher.getCapturedType(move)) / CAPTURE_HISTORY_SCALE;
+            // prioritise captures, unless the capture loses material in the exchange
+            score += isLosingExchange(move, startPiece, board, searcher.see) ? LOSING_CAPTURE_PENALTY : CAPTURE_BONUS;
         }
         // quiet moves positions
         else{
@@ -95,9 +136,9 @@ public class MoveOrdering {
             else if(move == searcher.killerMoves[1][ply]){
                 score += SECOND_KILLER;
             }
-            else{
-               // history move score
-                score += searcher.historyMoves[start][end];
+            // counter move (refutation of the opponent's previous move)
+            else if(ply > 0 && move == searcher.history.getCounterMove(searcher.stack.getMovedPiece(ply - 1), searcher.stack.getMoveEnd(ply - 1))){
+                score += COUNTER_MOVE_BONUS;
             }
         }
 
@@ -118,8 +159,10 @@ public class MoveOrdering {
         }
 
         // silent move
-        // score using change of Mid-game PSQT values
+        // score using the quiet / continuation history and change of Mid-game PSQT values
         if(score == 0){
+            score += getQuietHistoryScore(move, startPiece, searcher, ply) / QUIET_HISTORY_SCALE;
+
             int startPos = (startPiece.isWhite()) ? start : EvalUtilities.blackFlippedPosition[start];
             int endPos = (startPiece.isWhite()) ? end : EvalUtilities.blackFlippedPosition[end];
 
@@ -148,16 +191,48 @@ public class MoveOrdering {
         return score;
     }
 
-    public static ArrayList<Short> orderQuiescence(ArrayList<Short> moves, Search searcher, short bestMove) {
-        moves.sort((move1, move2) -> {
-            int moveScore1 = getQuiescenceScore(move1, searcher, bestMove);
-            int moveScore2 = getQuiescenceScore(move2, searcher, bestMove);
+    /**
+     * @return the quiet history score of a move, including the continuation history of the moves 1 and 2 plies before
+     */
+    public static int getQuietHistoryScore(short move, Piece startPiece, Search searcher, int ply){
+        int previousPiece = searcher.stack.getMovedPiece(ply - 1);
+        int previousEnd = searcher.stack.getMoveEnd(ply - 1);
+        int followUpPiece = searcher.stack.getMovedPiece(ply - 2);
+        int followUpEnd = searcher.stack.getMoveEnd(ply - 2);
+        return searcher.history.getQuietScore(MoveHistory.getPieceIndex(startPiece), MoveGenerator.getEnd(move),
+                previousPiece, previousEnd, followUpPiece, followUpEnd);
+    }
 
-            return Integer.compare(moveScore2, moveScore1);
-        });
+    /**
+     * Orders the captures and promotions searched in quiescence search. The scores are stored in the move score
+     * array of the ply in the same way as orderMoves()
+     * @return the ordered move list
+     */
+    public static ArrayList<Short> orderQuiescence(ArrayList<Short> moves, Search searcher, int ply, short bestMove) {
+        int[] scores = searcher.moveScores[ply];
+        for(int i = 0; i < moves.size(); i++){
+            scores[i] = getQuiescenceScore(moves.get(i), searcher, bestMove);
+        }
+        sortByScore(moves, scores);
         return moves;
     }
 
+    /**
+     * Only a capture of a less valuable piece can lose material, so the static exchange is only evaluated for those captures
+     * @return true if the capture loses material (SEE < 0)
+     */
+    private static boolean isLosingExchange(short move, Piece startPiece, Board board, SEE see){
+        if(MoveGenerator.getMoveType(move) != 4){
+            // enpassant captures and capture promotions do not lose material by themselves
+            return false;
+        }
+        Piece capturedPiece = board.getTile(MoveGenerator.getEnd(move)).getPiece();
+        if(capturedPiece.getPieceValue() >= startPiece.getPieceValue()){
+            return false;
+        }
+        return see.evaluate(move) < 0;
+    }
+
     private static int getQuiescenceScore(Short move, Search searcher, short bestMove){
         Board board = searcher.board;
 
@@ -182,7 +257,9 @@ public class MoveOrdering {
                 // enpassant capture
                 score += MVV_LVA_SCORES[PAWN_INDEX][PAWN_INDEX];  // pawn (victim) - pawn (attacker) capture
             }
-            score += CAPTURE_BONUS; // prioritise captures
+            score += searcher.history.getCaptureScore(MoveHistory.getPieceIndex(startPiece), end, searcher.getCapturedType(move)) / CAPTURE_HISTORY_SCALE;
+            // prioritise captures, unless the capture loses material in the exchange
+            score += isLosingExchange(move, startPiece, board, searcher.see) ? LOSING_CAPTURE_PENALTY : CAPTURE_BONUS;
         }
 
         if(MoveGenerator.isPromotion(move)){
@@ -0,0 +1,160 @@
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Multi-threaded perft, splitting the move generation tree across a ForkJoinPool.
+ *
+ * Each root move is searched by its own task. A task with enough depth left splits again into a task per move, so
+ * that large subtrees of an unbalanced tree are shared between threads by work stealing instead of leaving a single
+ * thread to count them. Boards are not thread-safe, so every task copies the position into its own board (through
+ * its FEN) and the counts are added up when the tasks are joined.
+ */
+public class ParallelPerft {
+    // tasks with at least this depth left split into a task per move, smaller subtrees are counted by a single thread
+    public static int SPLIT_DEPTH = 4;
+
+    private final Board board;
+    private final int threads;
+    private final PerftHashTable hashTable;     // shared by all tasks, null if disabled
+
+    /**
+     * @param board refers to the board of the position to count
+     * @param threads refers to the number of threads of the pool
+     */
+    public ParallelPerft(Board board, int threads) {
+        this.board = board;
+        this.threads = Math.max(1, threads);
+        this.hashTable = PerftHashTable.create();
+    }
+
+    /**
+     * Task counting the leaf nodes of the subtree after a move
+     */
+    private static class PerftTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final String FEN;
+        private final short encodedMove;
+        private final int depth;
+        private final PerftHashTable hashTable;
+
+        /**
+         * @param FEN refers to the position before the move
+         * @param encodedMove refers to the move made by the task, 0 if none
+         * @param depth refers to the depth left after the move
+         * @param hashTable refers to the perft hash table shared by all tasks, null if disabled
+         */
+        PerftTask(String FEN, short encodedMove, int depth, PerftHashTable hashTable) {
+            this.FEN = FEN;
+            this.encodedMove = encodedMove;
+            this.depth = depth;
+            this.hashTable = hashTable;
+        }
+
+        @Override
+        protected Long compute() {
+            Board taskBoard = new Board();
+            taskBoard.init(FEN);
+            if(encodedMove != 0){
+                new Move(taskBoard, encodedMove).makeMove();
+            }
+
+            if(depth < SPLIT_DEPTH){
+                return new Perft(taskBoard, hashTable).MoveGeneratorTest(depth);
+            }
+
+            // deeper split, a task per move
+            String childFEN = FENUtilities.convertBoardToFEN(taskBoard);
+            ArrayList<PerftTask> tasks = new ArrayList<>();
+            for(Short move : taskBoard.getAllLegalMoves()){
+                tasks.add(new PerftTask(childFEN, move, depth - 1, hashTable));
+            }
+            invokeAll(tasks);
+
+            long count = 0;
+            for(PerftTask task : tasks){
+                count += task.join();
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Counts the leaf nodes of every root move in parallel
+     * @return the total number of leaf nodes
+     */
+    private long divide(int depth) {
+        String FEN = FENUtilities.convertBoardToFEN(board);
+        ArrayList<Short> encodedMoves = board.getAllLegalMoves();
+        ArrayList<PerftTask> tasks = new ArrayList<>();
+        for(Short encodedMove : encodedMoves){
+            tasks.add(new PerftTask(FEN, encodedMove, depth - 1, hashTable));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try{
+            for(PerftTask task : tasks){
+                pool.execute(task);
+            }
+
+            // divide counts are printed in the order of the moves once each of them is done
+            long total = 0;
+            for(int i = 0; i < tasks.size(); i++){
+                long currCount = tasks.get(i).join();
+                System.out.println(MoveGenerator.toString(encodedMoves.get(i)) + " " + currCount + " ");
+                total += currCount;
+            }
+            return total;
+        }
+        finally{
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Counts the leaf nodes without printing the divide counts
+     * @return the total number of leaf nodes
+     */
+    public long count(int depth) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try{
+            return pool.invoke(new PerftTask(FENUtilities.convertBoardToFEN(board), (short) 0, depth, hashTable));
+        }
+        finally{
+            pool.shutdown();
+        }
+    }
+
+    public void perft(int depth){
+        if(depth < 1){
+            System.out.println("Search to Depth " + depth + ": 1");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long ans = divide(depth);
+        long finish = System.currentTimeMillis();
+        long timeElapsed = finish - start;
+
+        float convertTime = (float) timeElapsed / 1000;
+        double NPS = (timeElapsed == 0) ? ans : (double) ans / convertTime;
+
+        System.out.println();
+        System.out.println("Search to Depth " + depth + ": " + ans);
+        System.out.println("Threads: " + threads + ((hashTable != null) ? " (hashed)" : ""));
+        System.out.println("Time Elapsed: " + convertTime + " seconds");
+        System.out.println("NPS: " + NPS);
+    }
+
+    /*
+     * UNIT TESTING, COUNTS MUST MATCH THE SINGLE-THREADED PERFT
+     */
+    public static void main(String[] args) {
+        Board board = new Board();
+        board.init(FENUtilities.trickyFEN);
+        System.out.println(FENUtilities.convertBoardToFEN(board));     // expected trickyFEN
+
+        // tricky position depth 4 = 4085603
+        new ParallelPerft(board, Runtime.getRuntime().availableProcessors()).perft(4);
+    }
+}
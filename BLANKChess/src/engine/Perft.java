@@ -2,25 +2,41 @@ import java.util.ArrayList;
 
 public class Perft {
     private final Board board;
-    private long count;
+    private final PerftHashTable hashTable;     // subtree counts of transpositions, null if disabled
 
     public Perft(Board board) {
+        this(board, PerftHashTable.create());
+    }
+
+    /**
+     * @param hashTable refers to the perft hash table consulted before counting a subtree, null to count every subtree
+     */
+    public Perft(Board board, PerftHashTable hashTable) {
         this.board = board;
-        this.count = 0;
+        this.hashTable = hashTable;
     }
 
-    private long MoveGeneratorTest(int depth) {
+    public long MoveGeneratorTest(int depth) {
         if(depth == 0){
             return 1;
         }
 
-        count = 0;
+        // subtrees of depth 1 are counted faster than they are probed
+        boolean useHash = hashTable != null && depth > 1;
+        if(useHash){
+            long storedCount = hashTable.probe(board.getZobristHash(), depth);
+            if(storedCount != PerftHashTable.NO_COUNT){
+                return storedCount;
+            }
+        }
+
         ArrayList<Short> encodedMoves = board.getAllLegalMoves();
 
         if(depth == 1){
             return encodedMoves.size();
         }
 
+        long count = 0;
         for (Short encodedMove : encodedMoves) {
             Move move = new Move(board, encodedMove);
             move.makeMove();
@@ -28,6 +44,9 @@ public class Perft {
             move.unMake();
         }
 
+        if(useHash){
+            hashTable.store(board.getZobristHash(), depth, count);
+        }
         return count;
     }
 
@@ -0,0 +1,93 @@
+/**
+ * Hash table of perft subtree node counts, keyed by the zobrist hash of a position and the depth left, so that
+ * subtrees reached again through a transposition are not counted twice.
+ *
+ * The table is shared by the threads of the parallel perft without locks. Each entry is stored as two longs,
+ * the zobrist hash XOR-ed with the data and the data itself (node count and depth). An entry torn by two threads
+ * writing at the same time no longer matches its hash on a probe and is treated as a miss.
+ */
+public class PerftHashTable {
+    // size of the table allocated for a perft (in megabytes), 0 disables the table
+    public static int ALLOCATED_HASH_SIZE_MEGABYTES = 0;
+
+    // returned by probe() when the position is not in the table
+    public static final long NO_COUNT = -1;
+
+    private static final int DEPTH_BITS = 8;
+    private static final long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+    private static final int BYTES_PER_ENTRY = 16;
+
+    private final long[] entries;   // entry i is stored at 2i (hash ^ data) and 2i + 1 (data)
+    private final int indexMask;
+
+    /**
+     * @param megabytes refers to the size of the table (1000000 bytes per megabyte, like the "Hash" option), rounded down
+     * to a power of 2 number of entries
+     */
+    public PerftHashTable(int megabytes){
+        long maxEntries = Math.max(1, ((long) megabytes * 1000000) / BYTES_PER_ENTRY);
+        int entryCount = Integer.highestOneBit((int) Math.min(maxEntries, 1 << 28));
+        this.entries = new long[entryCount * 2];
+        this.indexMask = entryCount - 1;
+    }
+
+    /**
+     * @return a table of the size set by the "PerftHash" option, null if it is disabled
+     */
+    public static PerftHashTable create(){
+        return (ALLOCATED_HASH_SIZE_MEGABYTES > 0) ? new PerftHashTable(ALLOCATED_HASH_SIZE_MEGABYTES) : null;
+    }
+
+    /**
+     * @return the index of the entry, positions at different depths are spread over different entries
+     */
+    private int getIndex(long zobristHash, int depth){
+        return (int) ((zobristHash ^ (depth * 0x9E3779B97F4A7C15L)) & indexMask) * 2;
+    }
+
+    /**
+     * @return the node count of the subtree, NO_COUNT if it is not stored
+     */
+    public long probe(long zobristHash, int depth){
+        int index = getIndex(zobristHash, depth);
+        long data = entries[index + 1];
+        if((entries[index] ^ data) != zobristHash || (data & DEPTH_MASK) != depth){
+            return NO_COUNT;
+        }
+        return data >>> DEPTH_BITS;
+    }
+
+    /**
+     * Stores the node count of a subtree, always replacing the previous entry
+     */
+    public void store(long zobristHash, int depth, long count){
+        int index = getIndex(zobristHash, depth);
+        long data = (count << DEPTH_BITS) | depth;
+        entries[index] = zobristHash ^ data;
+        entries[index + 1] = data;
+    }
+
+    /**
+     * Unit Testing, hashed counts must match the unhashed counts
+     */
+    public static void main(String[] args) {
+        String[] positions = {FENUtilities.startFEN, FENUtilities.trickyFEN};
+        int[] depths = {5, 4};
+
+        for(int i = 0; i < positions.length; i++){
+            Board board = new Board();
+            board.init(positions[i]);
+
+            long start = System.currentTimeMillis();
+            long unhashed = new Perft(board, null).MoveGeneratorTest(depths[i]);
+            long unhashedTime = System.currentTimeMillis() - start;
+
+            start = System.currentTimeMillis();
+            long hashed = new Perft(board, new PerftHashTable(16)).MoveGeneratorTest(depths[i]);
+            long hashedTime = System.currentTimeMillis() - start;
+
+            System.out.println((unhashed == hashed ? "OK " : "MISMATCH ") + "depth " + depths[i] + " unhashed " + unhashed
+                    + " (" + unhashedTime + " ms) hashed " + hashed + " (" + hashedTime + " ms)");
+        }
+    }
+}
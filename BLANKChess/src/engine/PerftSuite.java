@@ -0,0 +1,226 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+
+/**
+ * Perft regression suite, run before any change to the move generation is accepted.
+ *
+ * Positions are read from an EPD file where each line holds a FEN followed by the expected node counts per depth:
+ *
+ *          r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1 ;D1 48 ;D2 2039 ;D3 97862
+ *
+ * The built-in suite (perftsuite.epd) holds the start position, Kiwipete, the other standard perft positions and
+ * the en passant, castling, promotion and stalemate edge cases. Every mismatch is reported, and the suite ends with
+ * the number of failed positions along with the per-position and aggregate NPS.
+ */
+public class PerftSuite {
+    public static final String DEFAULT_SUITE = "perftsuite.epd";
+
+    /**
+     * A position of the suite along with its expected node counts (index by depth, -1 if not given)
+     */
+    public static class SuitePosition {
+        public final String FEN;
+        public final long[] expectedCounts;
+
+        public SuitePosition(String FEN, long[] expectedCounts){
+            this.FEN = FEN;
+            this.expectedCounts = expectedCounts;
+        }
+    }
+
+    private final ArrayList<SuitePosition> positions;
+    private final int maxDepth;
+    private final int threads;
+
+    /**
+     * @param positions refers to the positions of the suite
+     * @param maxDepth refers to the deepest depth counted, deeper expected counts are skipped
+     * @param threads refers to the number of threads of the perft, 1 for the single-threaded perft
+     */
+    public PerftSuite(ArrayList<SuitePosition> positions, int maxDepth, int threads){
+        this.positions = positions;
+        this.maxDepth = maxDepth;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Loads a suite from an EPD file, or from the built-in suite if no file of that name exists
+     * @param fileName refers to the path of the EPD file
+     * @return the positions of the suite
+     */
+    public static ArrayList<SuitePosition> load(String fileName) throws IOException {
+        if(fileName == null){
+            throw new IllegalArgumentException("Invalid file!");
+        }
+
+        BufferedReader reader;
+        File file = new File(fileName);
+        if(file.isFile()){
+            reader = new BufferedReader(new FileReader(file));
+        }
+        else{
+            InputStream inputStream = PerftSuite.class.getResourceAsStream(fileName);
+            if(inputStream == null){
+                throw new IOException("Perft suite not found: " + fileName);
+            }
+            reader = new BufferedReader(new InputStreamReader(inputStream));
+        }
+
+        ArrayList<SuitePosition> positions = new ArrayList<>();
+        try{
+            String line;
+            while((line = reader.readLine()) != null){
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#")){
+                    continue;
+                }
+                positions.add(parseLine(line));
+            }
+        }
+        finally{
+            reader.close();
+        }
+        return positions;
+    }
+
+    /**
+     * Parses an EPD line "FEN ;D1 count ;D2 count ..."
+     */
+    private static SuitePosition parseLine(String line){
+        String[] sections = line.split(";");
+        String FEN = sections[0].trim();
+
+        // EPD positions may leave out the half move clock and full move number
+        if(FEN.split(" ").length == 4){
+            FEN += " 0 1";
+        }
+
+        int deepest = 0;
+        long[] counts = new long[sections.length + 1];
+        for(int i = 1; i < sections.length; i++){
+            String[] tokens = sections[i].trim().split(" ");
+            if(tokens.length != 2 || !tokens[0].startsWith("D")){
+                throw new IllegalArgumentException("Not a valid perft count: " + sections[i]);
+            }
+            int depth = Integer.parseInt(tokens[0].substring(1));
+            if(depth >= counts.length){
+                long[] resized = new long[depth + 1];
+                System.arraycopy(counts, 0, resized, 0, counts.length);
+                counts = resized;
+            }
+            counts[depth] = Long.parseLong(tokens[1]);
+            deepest = Math.max(deepest, depth);
+        }
+
+        long[] expectedCounts = new long[deepest + 1];
+        for(int depth = 0; depth <= deepest; depth++){
+            expectedCounts[depth] = (depth > 0 && counts[depth] > 0) ? counts[depth] : -1;
+        }
+        return new SuitePosition(FEN, expectedCounts);
+    }
+
+    /**
+     * Runs every position of the suite at each of its depths up to the maximum depth
+     * @return the number of positions with at least one mismatched count
+     */
+    public int run(){
+        int failedPositions = 0;
+        long totalNodes = 0;
+        long totalTime = 0;
+
+        for(int i = 0; i < positions.size(); i++){
+            SuitePosition position = positions.get(i);
+            boolean failed = false;
+            long positionNodes = 0;
+            long positionTime = 0;
+            StringBuilder results = new StringBuilder();
+
+            for(int depth = 1; depth < position.expectedCounts.length && depth <= maxDepth; depth++){
+                long expected = position.expectedCounts[depth];
+                if(expected < 0){
+                    continue;
+                }
+
+                Board board = new Board();
+                board.init(position.FEN);
+                long start = System.currentTimeMillis();
+                long count = (threads > 1) ? new ParallelPerft(board, threads).count(depth)
+                        : new Perft(board).MoveGeneratorTest(depth);
+                positionTime += System.currentTimeMillis() - start;
+                positionNodes += count;
+
+                if(count != expected){
+                    failed = true;
+                    System.out.println("MISMATCH " + position.FEN + " depth " + depth + ": expected " + expected + ", counted " + count);
+                }
+                results.append(" D").append(depth);
+            }
+
+            totalNodes += positionNodes;
+            totalTime += positionTime;
+            if(failed){
+                failedPositions++;
+            }
+            System.out.println((failed ? "FAIL " : "ok   ") + (i + 1) + "/" + positions.size() + results + " nodes "
+                    + positionNodes + " time " + positionTime + " ms nps " + getNPS(positionNodes, positionTime)
+                    + "  " + position.FEN);
+        }
+
+        System.out.println();
+        System.out.println("Positions: " + positions.size() + ", Failed: " + failedPositions);
+        System.out.println("Nodes: " + totalNodes + ", Time Elapsed: " + ((float) totalTime / 1000) + " seconds, NPS: "
+                + getNPS(totalNodes, totalTime));
+        System.out.println(failedPositions == 0 ? "PERFT SUITE PASSED" : "PERFT SUITE FAILED");
+        return failedPositions;
+    }
+
+    private static long getNPS(long nodes, long timeMillis){
+        return (timeMillis == 0) ? nodes : (nodes * 1000) / timeMillis;
+    }
+
+    /**
+     * Loads and runs a suite from the arguments of the "perftsuite" command
+     *
+     *          perftsuite [file <epd file>] [depth <max depth>] [threads <threads>]
+     *
+     * @return the number of positions with at least one mismatched count
+     */
+    public static int run(String[] args) throws IOException {
+        String fileName = DEFAULT_SUITE;
+        int maxDepth = Integer.MAX_VALUE;
+        int threads = 1;
+        for(int i = 0; i + 1 < args.length; i += 2){
+            switch(args[i]){
+                case "file":
+                    fileName = args[i + 1];
+                    break;
+                case "depth":
+                    maxDepth = Integer.parseInt(args[i + 1]);
+                    break;
+                case "threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        return new PerftSuite(load(fileName), maxDepth, threads).run();
+    }
+
+    /**
+     * Runs the perft suite from the command line, exiting with status 1 on any mismatch
+     *
+     *          java PerftSuite [file <epd file>] [depth <max depth>] [threads <threads>]
+     */
+    public static void main(String[] args) throws IOException {
+        if(run(args) > 0){
+            System.exit(1);
+        }
+    }
+}
@@ -1,198 +1,316 @@
-import java.util.ArrayList;
-import java.util.Comparator;
-
+/**
+ * Static Exchange Evaluation (SEE) - evaluates the material balance of the sequence of captures on a single square
+ * that follows a move, assuming both sides always recapture with their least valuable attacker.
+ *
+ * Attackers of the square are gathered using pre-calculated attack tables and an occupancy bitmask (bit i is set when
+ * square i is occupied). Whenever a piece leaves the square's line of attack, the ray behind it is scanned again so that
+ * x-ray attackers (i.e. a rook behind a rook, a queen behind a bishop) join the exchange.
+ *
+ * No objects are allocated during an evaluation.
+ */
 public class SEE {
+    // index of the directions in MoveDirections.directionOffSets (0 - 3 are straight, 4 - 7 are diagonal)
+    private static final int NO_DIRECTION = -1;
+
+    // maximum number of captures in an exchange on a single square (32 pieces on the board)
+    private static final int MAX_EXCHANGE_LENGTH = 32;
+
+    // pre-calculated attack tables for every square on the board
+    private static final long[] KNIGHT_ATTACKS;
+    private static final long[] KING_ATTACKS;
+    // squares where a white / black pawn has to stand to attack a square
+    private static final long[] WHITE_PAWN_ATTACKERS;
+    private static final long[] BLACK_PAWN_ATTACKERS;
+    // direction from the first square to the second square if both are on the same line, else NO_DIRECTION
+    private static final int[][] DIRECTION_BETWEEN;
+
     private final Board board;
-    private final ArrayList<Piece> whiteAttackers;
-    private final ArrayList<Piece> blackAttackers;
+    private final int[] gain;
+
+    static {
+        KNIGHT_ATTACKS = new long[64];
+        KING_ATTACKS = new long[64];
+        WHITE_PAWN_ATTACKERS = new long[64];
+        BLACK_PAWN_ATTACKERS = new long[64];
+        DIRECTION_BETWEEN = new int[64][64];
+
+        for(int square = 0; square < 64; square++){
+            int row = square / 8;
+            int col = square % 8;
+            for(int[] offset : new int[][]{{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}}){
+                KNIGHT_ATTACKS[square] |= getSquareBit(row + offset[0], col + offset[1]);
+            }
+            for(int rowOffset = -1; rowOffset <= 1; rowOffset++){
+                for(int colOffset = -1; colOffset <= 1; colOffset++){
+                    if(rowOffset != 0 || colOffset != 0){
+                        KING_ATTACKS[square] |= getSquareBit(row + rowOffset, col + colOffset);
+                    }
+                }
+            }
+            // white pawns attack towards the top of the board (row 0), so they attack from the row below
+            WHITE_PAWN_ATTACKERS[square] = getSquareBit(row + 1, col - 1) | getSquareBit(row + 1, col + 1);
+            BLACK_PAWN_ATTACKERS[square] = getSquareBit(row - 1, col - 1) | getSquareBit(row - 1, col + 1);
+
+            for(int other = 0; other < 64; other++){
+                DIRECTION_BETWEEN[square][other] = NO_DIRECTION;
+            }
+            int[] directions = MoveDirections.getDirections(square);
+            for(int index = 0; index < 8; index++){
+                for(int i = 1; i <= directions[index]; i++){
+                    DIRECTION_BETWEEN[square][square + (MoveDirections.directionOffSets[index] * i)] = index;
+                }
+            }
+        }
+    }
 
     public SEE(Board board){
         this.board = board;
-        whiteAttackers = new ArrayList<>();
-        blackAttackers = new ArrayList<>();
+        this.gain = new int[MAX_EXCHANGE_LENGTH];
     }
 
-    public int seeCapture(int from, int to){
-        int value = 0;
-        Piece capturedPiece, attackingPiece;
-        attackingPiece = board.getTile(from).getPiece();
-        if((capturedPiece = board.getTile(to).getPiece()) != null){
-            value = capturedPiece.getPieceValue(); // 100
-        }
-        else{
-            return value;
+    /**
+     * Evaluates the material won (or lost if negative) by the side making the move once all exchanges on the end square
+     * of the move have been resolved. Quiet moves are evaluated as well (the moving piece may be captured on its new square).
+     * @param move refers to the encoded move to evaluate
+     * @return the material balance of the exchange from the view of the side making the move
+     */
+    public int evaluate(short move){
+        if(MoveGenerator.isCastling(move)){
+            return 0;
         }
-        getAttackingPieces(to, attackingPiece);
 
-        boolean isWhiteTurn = capturedPiece.isWhite();  // true
-        ArrayList<Piece> attackerList;
-        if(isWhiteTurn){
-            attackerList = whiteAttackers;  //using this
+        int start = MoveGenerator.getStart(move);
+        int end = MoveGenerator.getEnd(move);
+        int moveType = MoveGenerator.getMoveType(move);
+
+        Piece movingPiece = board.getTile(start).getPiece();
+        boolean isWhiteSide = movingPiece.isWhite();
+        long occupied = getOccupancy();
+
+        // value of the piece captured by the move
+        if(moveType == 5){
+            // enpassant capture, the captured pawn is not on the end square
+            gain[0] = Pawn.PAWN_MG_VALUE;
+            occupied &= ~(1L << (isWhiteSide ? end + 8 : end - 8));
+        }
+        else if(board.getTile(end).isOccupied()){
+            gain[0] = board.getTile(end).getPiece().getPieceValue();
         }
         else{
-            attackerList = blackAttackers;
+            gain[0] = 0;
+        }
+
+        // value of the piece standing on the end square after the move
+        int pieceOnSquareValue = movingPiece.getPieceValue();
+        if(MoveGenerator.isPromotion(move)){
+            pieceOnSquareValue = getPromotionValue(moveType);
+            gain[0] += pieceOnSquareValue - Pawn.PAWN_MG_VALUE;
         }
 
-        int attackerIndex = 0;
+        occupied &= ~(1L << start);
+        long attackers = getAttackers(end, occupied) & occupied;
 
-        while(!attackerList.isEmpty()){
-            capturedPiece = attackingPiece; // captured piece set to black knight
-            if(capturedPiece.isKing()){
+        boolean isWhiteToCapture = !isWhiteSide;
+        int exchangeLength = 0;
+
+        while(exchangeLength < MAX_EXCHANGE_LENGTH - 1){
+            // find the least valuable attacker of the side to capture
+            int attackerSquare = getLeastValuableAttacker(attackers, isWhiteToCapture);
+            if(attackerSquare == NO_DIRECTION){
                 break;
             }
-            if(capturedPiece.isWhite() != isWhiteTurn){
-                value -= capturedPiece.getPieceValue(); // goes here 100 - 300 = -200
-            }
-            else{
-                value += capturedPiece.getPieceValue();
-            }
 
-            attackingPiece = attackerList.remove(attackerIndex);    // attacking piece set to white pawn
-            if(attackingPiece.isWhite()){
-                attackerList = blackAttackers;
-            }
-            else{
-                attackerList = whiteAttackers; //using this
+            exchangeLength++;
+            // gain if the piece on the square is captured and not recaptured
+            gain[exchangeLength] = pieceOnSquareValue - gain[exchangeLength - 1];
+
+            // the capture loses material even if it is not recaptured, so it will not be made
+            if(Math.max(-gain[exchangeLength - 1], gain[exchangeLength]) < 0){
+                exchangeLength--;
+                break;
             }
-        }
 
-        return value;
-    }
+            // a king capturing into a defended square is resolved by its large piece value
+            pieceOnSquareValue = board.getTile(attackerSquare).getPiece().getPieceValue();
 
-    public void getAttackingPieces(int square, Piece attackingPiece){
-        int end, offSet;
-
-        int[] knightSquares = MoveDirections.knightOffSets;
-        // search knight attacking squares
-        for(int i = 0; i < 8; i++){
-            end = square + knightSquares[i];
-            // if it is a valid knight move
-            if(Math.abs(board.getRow(square) - board.getRow(end)) + Math.abs(board.getCol(square) - board.getCol(end)) == 3
-                    && end >= 0 && end < 64){
-                if(board.getTile(end).isOccupied()){
-                    Piece piece = board.getTile(end).getPiece();
-                    if(piece.isKnight() && piece != attackingPiece){
-                        if(piece.isWhite()){
-                            whiteAttackers.add(piece);
-                        }
-                        else{
-                            blackAttackers.add(piece);
-                        }
-                    }
-                }
-            }
-        }
+            occupied &= ~(1L << attackerSquare);
+            attackers &= ~(1L << attackerSquare);
 
-        int[] directions = MoveDirections.getDirections(square);
-        for(int index = 0; index < 8; index++){
-            offSet = MoveDirections.directionOffSets[index];
-            for(int i = 0; i < directions[index]; i++) {
-                end = square + (offSet * (i + 1));
-                if (board.getTile(end).isOccupied()) {
-                    Piece piece = board.getTile(end).getPiece();
-                    if (piece.isPawn() || piece.isKnight() || piece == attackingPiece) {
-                        continue;
-                    }
-                    if(piece.isKing() && i == 0){
-                        if(piece.isWhite()){
-                            whiteAttackers.add(piece);
-                        }
-                        else{
-                            blackAttackers.add(piece);
-                        }
-                        continue;
-                    }
-                    if (index < 4) {  // for straight directions, check if it is a rook / queen
-                        if (piece.isRook() || piece.isQueen()) {
-                            if(piece.isWhite()){
-                                whiteAttackers.add(piece);
-                            }
-                            else{
-                                blackAttackers.add(piece);
-                            }
-                        }
-                    }
-                    else {   // diagonal directions
-                        if (piece.isBishop() || piece.isQueen()) {
-                            if(piece.isWhite()){
-                                whiteAttackers.add(piece);
-                            }
-                            else{
-                                blackAttackers.add(piece);
-                            }
-                        }
-                    }
-                }
-            }
+            // add any x-ray attacker behind the piece which has just captured
+            attackers |= getXRayAttacker(end, attackerSquare, occupied);
+
+            isWhiteToCapture = !isWhiteToCapture;
         }
 
-        // search for pawn attackers
-        searchPawnAttackers(true, square, attackingPiece);  // search for black pawns
-        searchPawnAttackers(false, square, attackingPiece); // search for white pawns
+        // resolve the exchange from the last capture, each side may choose to stop capturing
+        while(exchangeLength > 0){
+            gain[exchangeLength - 1] = -Math.max(-gain[exchangeLength - 1], gain[exchangeLength]);
+            exchangeLength--;
+        }
 
-        // sort attackers using piece value from smallest to largest
-        whiteAttackers.sort(Comparator.comparingInt(Piece::getPieceValue));
-        blackAttackers.sort(Comparator.comparingInt(Piece::getPieceValue));
+        return gain[0];
     }
 
-    public void searchPawnAttackers(boolean isWhitePiece, int piecePosition, Piece attackingPiece){
-        int rightPawnIndex;
-        int leftPawnIndex;
+    /**
+     * @param move refers to the encoded move to evaluate
+     * @param threshold refers to the minimum material balance required
+     * @return true if the exchange started by the move does not lose more than the threshold
+     */
+    public boolean isAtLeast(short move, int threshold){
+        return evaluate(move) >= threshold;
+    }
 
-        if(isWhitePiece){
-            // set black pawn locations relative to white piece
-            leftPawnIndex = piecePosition -9;
-            rightPawnIndex = piecePosition -7;
+    /**
+     * @return bitmask of all occupied squares on the board
+     */
+    private long getOccupancy(){
+        long occupied = 0;
+        PieceList whitePieces = board.getWhitePieces();
+        for(int i = 0; i < whitePieces.getCount(); i++){
+            occupied |= 1L << whitePieces.occupiedTiles[i];
         }
-        else{
-            // set white pawn location relative to black piece
-            leftPawnIndex = piecePosition + 7;
-            rightPawnIndex = piecePosition + 9;
+        PieceList blackPieces = board.getBlackPieces();
+        for(int i = 0; i < blackPieces.getCount(); i++){
+            occupied |= 1L << blackPieces.occupiedTiles[i];
         }
+        return occupied;
+    }
 
-        boolean rightEdgePiece = false;
-        boolean leftEdgePiece = false;
+    /**
+     * Gets all pieces of both sides attacking a square given the occupancy of the board
+     * @param square refers to the square being attacked
+     * @param occupied refers to the occupancy bitmask of the board
+     * @return bitmask of the squares of all attackers
+     */
+    private long getAttackers(int square, long occupied){
+        long attackers = 0;
 
-        if(piecePosition % 8 == 0){ // piece on left edge
-            leftEdgePiece = true;
+        long knights = KNIGHT_ATTACKS[square] & occupied;
+        while(knights != 0){
+            int position = Long.numberOfTrailingZeros(knights);
+            knights &= knights - 1;
+            if(board.getTile(position).getPiece().isKnight()){
+                attackers |= 1L << position;
+            }
         }
-        else if (piecePosition % 8 == 7){  // piece on right edge
-            rightEdgePiece = true;
+
+        long kings = KING_ATTACKS[square] & occupied;
+        while(kings != 0){
+            int position = Long.numberOfTrailingZeros(kings);
+            kings &= kings - 1;
+            if(board.getTile(position).getPiece().isKing()){
+                attackers |= 1L << position;
+            }
         }
 
-        if(!rightEdgePiece && checkBound(rightPawnIndex) && board.getTile(rightPawnIndex).isOccupied()){
-            Piece piece = board.getTile(rightPawnIndex).getPiece();
-            if(piece.isPawn() && piece.isWhite() != isWhitePiece && piece != attackingPiece){
-                if(piece.isWhite()){
-                    whiteAttackers.add(piece);
-                }
-                else{
-                    blackAttackers.add(piece);
+        long pawns = (WHITE_PAWN_ATTACKERS[square] | BLACK_PAWN_ATTACKERS[square]) & occupied;
+        while(pawns != 0){
+            int position = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            Piece piece = board.getTile(position).getPiece();
+            if(piece.isPawn()){
+                long pawnAttackers = piece.isWhite() ? WHITE_PAWN_ATTACKERS[square] : BLACK_PAWN_ATTACKERS[square];
+                if((pawnAttackers & (1L << position)) != 0){
+                    attackers |= 1L << position;
                 }
             }
         }
-        if(!leftEdgePiece && checkBound(leftPawnIndex) && board.getTile(leftPawnIndex).isOccupied()){
-            Piece piece = board.getTile(leftPawnIndex).getPiece();
-            if(piece.isPawn() && piece.isWhite() != isWhitePiece && piece != attackingPiece){
-                if(piece.isWhite()){
-                    whiteAttackers.add(piece);
-                }
-                else{
-                    blackAttackers.add(piece);
+
+        // sliding pieces
+        for(int index = 0; index < 8; index++){
+            attackers |= getSlidingAttacker(square, index, occupied);
+        }
+
+        return attackers;
+    }
+
+    /**
+     * Scans the ray from a square in a direction for the first piece, which attacks the square if it is a sliding piece
+     * able to move in that direction
+     * @return bitmask of the attacker found, else 0
+     */
+    private long getSlidingAttacker(int square, int directionIndex, long occupied){
+        int offSet = MoveDirections.directionOffSets[directionIndex];
+        int squaresToEdge = MoveDirections.getDirections(square)[directionIndex];
+        for(int i = 1; i <= squaresToEdge; i++){
+            int position = square + (offSet * i);
+            if((occupied & (1L << position)) != 0){
+                Piece piece = board.getTile(position).getPiece();
+                if(piece.isQueen()
+                        || (directionIndex < 4 && piece.isRook())
+                        || (directionIndex >= 4 && piece.isBishop())){
+                    return 1L << position;
                 }
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return bitmask of the sliding piece behind the piece that has just left the ray towards the square, else 0
+     */
+    private long getXRayAttacker(int square, int vacatedSquare, long occupied){
+        int directionIndex = DIRECTION_BETWEEN[square][vacatedSquare];
+        if(directionIndex == NO_DIRECTION){
+            // knights are never in between a square and another attacker
+            return 0;
+        }
+        return getSlidingAttacker(square, directionIndex, occupied);
+    }
+
+    /**
+     * @return the square of the least valuable attacker of a side, else NO_DIRECTION if the side has no attackers left
+     */
+    private int getLeastValuableAttacker(long attackers, boolean isWhite){
+        int leastValuableSquare = NO_DIRECTION;
+        int leastValue = Integer.MAX_VALUE;
+        while(attackers != 0){
+            int position = Long.numberOfTrailingZeros(attackers);
+            attackers &= attackers - 1;
+            Piece piece = board.getTile(position).getPiece();
+            if(piece.isWhite() == isWhite && piece.getPieceValue() < leastValue){
+                leastValue = piece.getPieceValue();
+                leastValuableSquare = position;
             }
         }
+        return leastValuableSquare;
     }
 
-    private boolean checkBound(int index){
-        return index >= 0 && index <= 63;
+    private static int getPromotionValue(int moveType){
+        switch(moveType & 3){
+            case 0: return Knight.KNIGHT_MG_VALUE;
+            case 1: return Bishop.BISHOP_MG_VALUE;
+            case 2: return Rook.ROOK_MG_VALUE;
+            default: return Queen.QUEEN_MG_VALUE;
+        }
+    }
+
+    private static long getSquareBit(int row, int col){
+        if(row < 0 || row > 7 || col < 0 || col > 7){
+            return 0;
+        }
+        return 1L << (row * 8 + col);
     }
 
     public static void main(String[] args) {
-//        Board board = new Board();
-//        board.init("8/8/1n2k3/2pP2r1/2K5/8/3Q2B1/8 b - - 0 1");
-//
-//        SEE test = new SEE(board);
-//        System.out.println(test.seeCapture(17, 27));
+        Board board = new Board();
+        SEE see = new SEE(board);
+
+        // quiet move: queen moves to a square attacked by a pawn
+        board.init("4k3/8/2p5/8/8/8/8/3QK3 w - - 0 1");
+        System.out.println("Qd5: " + see.evaluate(MoveGenerator.generateMove(59, 27, 0)));      // expected -1025
+
+        // rook takes undefended pawn
+        board = new Board();
+        see = new SEE(board);
+        board.init("1k1r4/1pp4p/p7/4p3/8/P5P1/1PP4P/2K1R3 w - - 0 1");
+        System.out.println("Rxe5: " + see.evaluate(MoveGenerator.generateMove(60, 28, 4)));     // expected 82
+
+        // knight takes pawn defended by a knight, with x-ray attackers behind the rook / bishop on both sides
+        board = new Board();
+        see = new SEE(board);
+        board.init("1k1r3q/1ppn3p/p4b2/4p3/8/P2N2P1/1PP1R1BP/2K1Q3 w - - 0 1");
+        System.out.println("Nxe5: " + see.evaluate(MoveGenerator.generateMove(43, 28, 4)));     // expected -255 (82 - 337)
     }
 }
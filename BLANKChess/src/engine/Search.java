@@ -9,7 +9,6 @@ public class Search {
     private static final int CHECKMATE_THRESHOLD = 99000;
     private static final int DRAW_SCORE = 0;
     private static final int CONTEMPT_FACTOR = 20;
-    private static final int STATIC_NULL_MOVE_PRUNING_MARGIN = 120;
 
     // Late Move Reduction - Reduction factor pre-calculated in look-up table
     private static final int MAX_PLY = 60;
@@ -17,26 +16,71 @@ public class Search {
     private static final int REDUCTION_LIMIT = 3;
     private static final int[][] REDUCTION_TABLE;
 
-    // Futility Pruning Margins
-    private static final int[] futilityMargin = {0, 200, 300, 500};
+    // Aspiration windows - search with a narrow window around the previous iteration's score
+    private static final int ASPIRATION_MIN_DEPTH = 4;
+    private static final int ASPIRATION_WINDOW = 25;
+    private static final int ASPIRATION_MAX_WINDOW = 500;
 
-    // Null move pruning
-    private static final int STANDARD_REDUCTION_CONSTANT = 2;
-    private static final int DEEPER_REDUCTION_CONSTANT = 3;
-    private boolean isDoingNullMove;
+    // MultiPV - number of best lines reported in each iteration
+    public static final int MAX_MULTI_PV = 64;
+    public static int MULTI_PV = 1;
+
+    // Proof-number search used by "go mate"
+    private final MateSolver mateSolver;
+
+    // Forward pruning techniques (static null move, razoring, null move, ProbCut, futility, late move, history, SEE)
+    private final ForwardPruning pruning;
+
+    // per-ply state: static evaluation, check status, improving, move searched, reduction, null move and excluded move
+    public final SearchStack stack;
+
+    // Singular extensions - extend the TT move when no other move comes close to its score in a reduced search
+    private static final int SINGULAR_MIN_DEPTH = 8;
+    private static final int SINGULAR_TT_DEPTH_MARGIN = 3;
+    private static final int SINGULAR_MARGIN = 2;
+    private static final int MULTI_CUT = -1;
+
+    // Internal iterative reduction / deepening - nodes without a TT move to order first are either searched 1 ply
+    // shallower (reduction) or first searched at a reduced depth to find a best move for move ordering (deepening)
+    public enum IIDMode {
+        OFF, REDUCTION, DEEPENING
+    }
+    public static IIDMode IID_MODE = IIDMode.REDUCTION;
+    private static final int IIR_MIN_DEPTH = 4;
+    private static final int IID_MIN_DEPTH = 5;
+    private static final int IID_DEPTH_REDUCTION = 2;
+
+    // search quiet moves giving check at the first ply of the quiescence search
+    public static boolean QSEARCH_CHECKS = false;
+
+    // TT usage, move ordering quality, tree shape, pruning and re-search counts of the current search
+    public final SearchStatistics statistics;
 
     // Used to stop search when "stop" command is given
     private final BufferedReader listener = new BufferedReader(new InputStreamReader(System.in));
     private boolean searchStopped;
 
+    // Pondering - search on the opponent's time until "ponderhit" or "stop" is given. The expected reply is only
+    // given with "bestmove" when the GUI allows pondering ("Ponder" option)
+    public static boolean PONDER = false;
+    private boolean isPondering;
+    private short ponderMove;
+
     // Search info
     private int ply;
     private int maxPly;
     private int nodeCount;
+    private long searchNodeCount;
     private int cutOffCount;
 
-    // A clock to limit the search duration
-    private final Clock timer;
+    // Limits of the current search (time, depth, nodes, mate, root moves)
+    private SearchLimits limits;
+
+    // Manages the time of the search with a soft and hard limit
+    private final TimeManager timeManager;
+
+    // every 1024 (in binary: 0b1111111111) nodes, check if the hard time limit has been reached
+    private static final int TIME_CHECK_INTERVAL = 1023;
 
     // Used to obtain Principle Variation from iterative deepening search
     public int[] PVLength;
@@ -44,10 +88,26 @@ public class Search {
     public boolean followPVLine;
     public boolean pvMoveScoring;
 
+    // best lines of the current iteration for MultiPV, sorted from best to worst
+    private final short[][] multiPVLines;
+    private final int[] multiPVLength;
+    private final int[] multiPVScores;
+    private final ArrayList<Short> excludedRootMoves;
+
     // Memoization of searched nodes with transposition table
     public TranspositionTable TT;
     public short[][] killerMoves;
-    public short[][] historyMoves;
+
+    // History, continuation history, capture history and counter move heuristics
+    public final MoveHistory history;
+
+    // quiet moves and captures searched at each ply, which receive a history malus when another move causes a cut-off
+    private final short[][] quietsSearched;
+    private final short[][] capturesSearched;
+
+    // Static exchange evaluation of moves and move ordering scores of the move list at each ply
+    public SEE see;
+    public final int[][] moveScores;
 
     // Root board state where search begins
     public Board board;
@@ -82,12 +142,24 @@ public class Search {
     public Search(Board board, TranspositionTable TT){
         this.board = board;
         this.TT = TT;
-        this.isDoingNullMove = false;
-        this.timer = new Clock();
+        this.timeManager = new TimeManager();
         this.killerMoves = new short[2][MAX_PLY];
-        this.historyMoves = new short[64][64];
+        this.history = new MoveHistory();
+        this.quietsSearched = new short[MAX_PLY][MAX_MOVES];
+        this.capturesSearched = new short[MAX_PLY][MAX_MOVES];
         this.PVMoves = new short[MAX_PLY][MAX_PLY];
         this.PVLength = new int[MAX_PLY];
+        this.limits = new SearchLimits();
+        this.multiPVLines = new short[MAX_MULTI_PV][MAX_PLY];
+        this.multiPVLength = new int[MAX_MULTI_PV];
+        this.multiPVScores = new int[MAX_MULTI_PV];
+        this.excludedRootMoves = new ArrayList<>();
+        this.see = new SEE(board);
+        this.moveScores = new int[MAX_PLY + 1][MAX_MOVES];
+        this.pruning = new ForwardPruning();
+        this.stack = new SearchStack(MAX_PLY + 1);
+        this.statistics = new SearchStatistics(TT, pruning, MAX_PLY);
+        this.mateSolver = new MateSolver(board, this);
     }
 
     /**
@@ -95,6 +167,8 @@ public class Search {
      */
     public void setBoard(Board newBoard){
         this.board = newBoard;
+        this.see = new SEE(newBoard);
+        this.mateSolver.setBoard(newBoard);
     }
 
     /**
@@ -103,116 +177,534 @@ public class Search {
      * @return the encoded move determined to be the best move
      */
     public short startSearch(double searchDuration){
-        System.out.println("Time Allocated: " + searchDuration + " seconds");
+        return search(SearchLimits.timed(searchDuration));
+    }
+
+    /**
+     * search for best move found for a given depth
+     * @param depth refers to the depth to search a position
+     * @return the best move found
+     */
+    public short depthSearch(int depth){
+        return search(SearchLimits.fixedDepth(depth));
+    }
+
+    /**
+     * search for best move using iterative deepening until any of the search limits is reached or "stop" command is given.
+     * When pondering, the clock is only started once "ponderhit" is received. An infinite or ponder search will
+     * not end on its own and waits for "stop" / "ponderhit" before reporting the best move.
+     * @param limits refers to the limits of the search (time, depth, nodes, mate, root moves to search)
+     * @return the encoded move determined to be the best move
+     */
+    public short search(SearchLimits limits){
+        this.limits = limits;
+
+        // a pause of the garbage collector during the search is taken from the clock
+        EngineEvents.GCSensitivePhase searchPhase = new EngineEvents.GCSensitivePhase();
+        searchPhase.begin();
+        long gcTime = EngineMetrics.getGCTime();
+        long gcCount = EngineMetrics.getGCCount();
 
         // set the time for search.
-        timer.setTime(searchDuration);
-        timer.start();  // start the clock
+        timeManager.init(limits);
+        if(limits.isTimed()){
+            System.out.println("Time Allocated: " + (timeManager.getSoftLimit() / 1000.0) + " seconds (hard limit "
+                    + (timeManager.getHardLimit() / 1000.0) + " seconds)");
+        }
+        if(limits.depth != SearchLimits.MAX_DEPTH){
+            System.out.println("Target Depth: " + limits.depth);
+        }
 
-        double iterationEndTime, timeElapsedSinceStart = 1;
+        isPondering = limits.ponder;
+        if(isPondering){
+            // clock is only started on "ponderhit", until then the search has no deadline
+            statistics.ponderSearches++;
+        }
+        else if(limits.isTimed()){
+            timeManager.start();  // start the clock
+        }
+
+        long searchStartTime = System.nanoTime();
+        double timeElapsedSinceStart = 1;
         short currentMove, bestMove = 0;
-        int totalNodeCount = 0;
 
         searchStopped = false;
+        searchNodeCount = 0;
+        statistics.reset();
+        ponderMove = 0;
+        PVMoves = new short[MAX_PLY][MAX_PLY];
         killerMoves = new short[2][MAX_PLY];
-        historyMoves = new short[64][64];
+        history.age();
+        stack.clear();
+
+        // "go mate" is first given to the proof-number mate solver, alpha-beta is only used if no mate is proven
+        boolean useMateSolver = limits.hasMateLimit() && MateSolver.ENABLED && !limits.ponder && !limits.hasSearchMoves();
+        short mateMove = 0;
+        if(useMateSolver){
+            mateMove = solveMate(searchStartTime);
+        }
 
-        int numberOfMoves = board.getAllLegalMoves().size();
+        int numberOfMoves = limits.hasSearchMoves() ? limits.searchMoves.size() : board.getAllLegalMoves().size();
+        int maxDepth = Math.min(limits.depth, MAX_PLY);
+        if(mateMove != 0){
+            // the proven mate is the result of the search, no iteration is searched
+            bestMove = mateMove;
+            maxDepth = 0;
+            timeElapsedSinceStart = Math.max((System.nanoTime() - searchStartTime) / 1000000.0, 1);
+        }
+        else if(useMateSolver){
+            // no mate was proven (disproven, or unknown when the solver ran out of memory). The alpha-beta search that
+            // follows is limited to the depth of the mate, it would otherwise search until it is stopped
+            maxDepth = Math.min(maxDepth, 2 * limits.mate);
+        }
+        int numberOfLines = Math.max(1, Math.min(Math.min(MULTI_PV, MAX_MULTI_PV), numberOfMoves));
+        for(int pvIndex = 0; pvIndex < numberOfLines; pvIndex++){
+            multiPVLength[pvIndex] = 0;
+            multiPVScores[pvIndex] = 0;
+        }
 
         // iterative deepening search
-        for (int curr_depth = 1; curr_depth <= MAX_PLY; curr_depth++) {
+        for (int curr_depth = 1; curr_depth <= maxDepth; curr_depth++) {
 
-            // reset all variables for each iteration
-            resetSearch();
+            // seldepth covers every line and aspiration re-search of the iteration
+            maxPly = 0;
 
-            // follow the Pv line found in previous search
-            followPVLine = true;
-
-            // search for bestmove for current iteration
-            int score = negamax(curr_depth, 0, -INFINITY, INFINITY);
-
-            // best move found in current iteration
-            currentMove = PVMoves[0][0];
+            // search for the best lines of the current iteration
+            EngineEvents.SearchIteration iterationEvent = new EngineEvents.SearchIteration();
+            iterationEvent.begin();
+            int linesSearched = searchMultiPV(curr_depth, numberOfLines);
+            iterationEvent.end();
 
-            // end time of this iteration
-            iterationEndTime = System.currentTimeMillis();
-
-            // time taken to get to this iteration (to determine if we should continue to search next iteration in given time)
-            timeElapsedSinceStart = iterationEndTime - timer.getStartTime();
+            // time taken to get to this iteration (in milliseconds)
+            timeElapsedSinceStart = (System.nanoTime() - searchStartTime) / 1000000.0;
             if(timeElapsedSinceStart == 0){
                 timeElapsedSinceStart = 1;  // prevent division by 0 when calculating nps
             }
 
+            boolean mateFound = false;
+
             // if the current search was not stopped by clock, use the results of the search
-            if (!searchStopped) {
+            if (linesSearched > 0) {
                 // set best move to the best move of current iteration
+                currentMove = multiPVLines[0][0];
                 bestMove = currentMove;
+                int score = multiPVScores[0];
 
-                String searchInfo;
-                // information obtained from the search
-                if(score > CHECKMATE_THRESHOLD || score < -CHECKMATE_THRESHOLD){
-                    // print out mate value instead of score
-                    String mate = "";
-                    if(score > CHECKMATE_THRESHOLD){
-                        int movesToMate = ((CHECKMATE_SCORE - score) / 2) + 1;
-                        mate = String.valueOf(movesToMate);
-                    }
-                    if(score < -CHECKMATE_THRESHOLD){
-                        int movesToMate = ((-CHECKMATE_SCORE - score) / 2) - 1;
-                        mate = String.valueOf(movesToMate);
-                    }
-                    searchInfo = "info depth " + curr_depth +
-                            " seldepth " + maxPly +
-                            " score mate " + mate +
-                            " nodes " + (totalNodeCount += nodeCount) +
-                            " nps " + (long) ((totalNodeCount * 1000L) / timeElapsedSinceStart) +
-                            " ttCut " + cutOffCount +
-                            " time " + (int) timeElapsedSinceStart;
-                }
-                else{
-                    searchInfo = "info depth " + curr_depth +
-                            " seldepth " + maxPly +
-                            " score cp " + score +
-                            " nodes " + (totalNodeCount += nodeCount) +
-                            " nps " + (long) ((totalNodeCount * 1000L) / timeElapsedSinceStart) +
-                            " ttCut " + cutOffCount +
-                            " time " + (int) timeElapsedSinceStart;
-                }
+                // expected reply of the opponent to be pondered on
+                ponderMove = (multiPVLength[0] > 1) ? multiPVLines[0][1] : 0;
 
-                // PV line obtained from the search
-                StringBuilder PVLine = new StringBuilder(" pv ");
-                for (int i = 0; i < PVLength[0]; i++) {
-                    PVLine.append(MoveGenerator.toString(PVMoves[0][i]));
-                    PVLine.append(" ");
+                for(int pvIndex = 0; pvIndex < linesSearched; pvIndex++){
+                    printSearchInfo(curr_depth, pvIndex, numberOfLines, timeElapsedSinceStart);
                 }
-                System.out.println(searchInfo + PVLine);
+
+                statistics.recordIteration(curr_depth, searchNodeCount);
+
+                // adjust the time used for the move based on the stability of the best move and score
+                timeManager.onIterationComplete(curr_depth, bestMove, score);
+
+                // "go mate" ends once a mate within the given number of moves has been found
+                mateFound = limits.hasMateLimit() && score > CHECKMATE_THRESHOLD
+                        && ((CHECKMATE_SCORE - score) / 2) + 1 <= limits.mate;
+            }
+
+            if(iterationEvent.shouldCommit()){
+                iterationEvent.depth = curr_depth;
+                iterationEvent.completed = linesSearched > 0;
+                iterationEvent.score = multiPVScores[0];
+                iterationEvent.bestMove = (bestMove == 0) ? "0000" : MoveGenerator.toString(bestMove);
+                iterationEvent.nodes = searchNodeCount;
+                iterationEvent.elapsedTime = (long) timeElapsedSinceStart;
+                iterationEvent.commit();
+            }
+
+            // the search has nothing left to search
+            boolean searchCompleted = mateFound || curr_depth == maxDepth
+                    || (limits.hasNodeLimit() && searchNodeCount >= limits.nodes)
+                    || (numberOfMoves == 1 && (limits.isTimed() || isPondering));
+
+            // while pondering / searching infinitely, the search may not end by itself. Wait for "ponderhit" or "stop"
+            if(searchCompleted && !searchStopped && (isPondering || limits.infinite)){
+                waitForSearchResult();
             }
 
             /*
              * hard stop the search if:
-             *      - timer is up
-             *      - remaining time < time taken to get to current ply
+             *      - soft time limit (scaled by best move stability) or hard time limit is reached
              *      - "stop" command is given
-             *      - there is only 1 legal move to make
+             *      - any of the other search limits has been reached (depth, nodes, mate, only 1 legal move to make)
              */
 
-            if (timer.isTimeUp()
-                    || (timer.getRemainingTime() < timeElapsedSinceStart)
-                    || searchStopped
-                    || numberOfMoves == 1) {
+            if (searchStopped || searchCompleted) {
+                break;
+            }
+            if (timeManager.shouldStop()) {
                 break;
             }
         }
 
-        System.out.println("bestmove " + MoveGenerator.toString(bestMove));
-        System.out.println("Time Taken: " + timeElapsedSinceStart);
-        System.out.println("Transposition Table Size: " + TT.size());
+        // a mate proven while searching infinitely is only reported once "stop" is given
+        if(mateMove != 0 && !searchStopped && limits.infinite){
+            waitForSearchResult();
+        }
+
+        // if the search was stopped before the first iteration completed, fall back to any legal move
+        if(bestMove == 0){
+            bestMove = getFallbackMove();
+        }
+
+        statistics.recordSearchEnd(searchNodeCount);
+        statistics.printInfo();
+        printBestMove(bestMove);
+        System.out.println("Time Taken: " + (long) timeElapsedSinceStart);
+        if(timeManager.isStarted()){
+            System.out.println("Time Stop Reason: " + timeManager.getStopReason());
+        }
+
+        commitTimeDecision((long) timeElapsedSinceStart);
+        EngineMetrics.recordSearch(searchNodeCount, (long) timeElapsedSinceStart, statistics.getDepthCompleted(),
+                limits.isTimed() ? timeManager.getSoftLimit() : 0, getStopReason(), TT.hashfull(),
+                EngineMetrics.getGCTime() - gcTime, EngineMetrics.getGCCount() - gcCount);
+        if(searchPhase.shouldCommit()){
+            searchPhase.phase = limits.isTimed() ? "timed search" : "search";
+            searchPhase.commit();
+        }
 
         searchStopped = false;
+        isPondering = false;
 
         return bestMove;
     }
 
+    /**
+     * Solves "go mate" with the proof-number mate solver. If a mate is proven, its line is reported and its first move
+     * becomes the result of the search
+     * @param searchStartTime refers to the time the search was started (System.nanoTime)
+     * @return the first move of the mating line, 0 if no mate was proven
+     */
+    private short solveMate(long searchStartTime){
+        MateSolver.Result result = mateSolver.solve(limits.mate);
+
+        double timeElapsed = Math.max((System.nanoTime() - searchStartTime) / 1000000.0, 1);
+        System.out.println("info string mate solver " + result.status + " (nodes " + result.nodes + ", time "
+                + (int) timeElapsed + ", memory " + MateSolver.MEMORY_MEGABYTES + " MB)");
+
+        if(result.status == MateSolver.Status.PROVEN){
+            StringBuilder PVLine = new StringBuilder();
+            for(Short move : result.line){
+                PVLine.append(" ").append(MoveGenerator.toString(move));
+            }
+            System.out.println("info depth " + result.line.size() + " score mate " + result.getMateIn() +
+                    " nodes " + result.nodes + " nps " + (long) ((result.nodes * 1000L) / timeElapsed) +
+                    " time " + (int) timeElapsed + " pv" + PVLine);
+
+            // the nodes of the solver are the nodes of the search which ends with the proven mate
+            searchNodeCount = result.nodes;
+            ponderMove = (result.line.size() > 1) ? result.line.get(1) : 0;
+            return result.line.get(0);
+        }
+        return 0;
+    }
+
+    /**
+     * Polled by the mate solver, which is stopped by "stop" or the node / time limits of the search
+     * @param nodes refers to the number of nodes created by the mate solver
+     * @return true if the mate solver has to stop
+     */
+    public boolean isMateSolverStopped(long nodes){
+        listen();
+        if((limits.hasNodeLimit() && nodes >= limits.nodes) || timeManager.isHardLimitReached()){
+            searchStopped = true;
+        }
+        return searchStopped;
+    }
+
+    /**
+     * Searches the root position with a narrow window centred on the score of the previous iteration.
+     * If the score falls outside the window, the window is widened on the failing side and the position is re-searched
+     * until the score lies within the window, falling back to a full window once the window grows too wide.
+     * @param depth refers to the depth of the current iteration
+     * @param previousScore refers to the score obtained in the previous iteration
+     * @return the score of the best move found at the root
+     */
+    private int aspirationSearch(int depth, int previousScore){
+        int alpha = -INFINITY;
+        int beta = INFINITY;
+        int window = ASPIRATION_WINDOW;
+
+        // only use a narrow window when the previous score is stable enough (not at low depths or when a mate is found)
+        if(depth >= ASPIRATION_MIN_DEPTH && Math.abs(previousScore) < CHECKMATE_THRESHOLD){
+            alpha = previousScore - window;
+            beta = previousScore + window;
+        }
+
+        while(true){
+            // reset all variables for each iteration
+            resetSearch();
+
+            // follow the Pv line found in previous search
+            followPVLine = true;
+
+            int score = pvSearch(depth, 0, alpha, beta);
+            searchNodeCount += nodeCount;
+
+            if(searchStopped){
+                return score;
+            }
+
+            // widen the window on the side which failed
+            if(score <= alpha && alpha > -INFINITY){
+                statistics.aspirationFailLows++;
+                window *= 2;
+                alpha = Math.max(score - window, -INFINITY);
+            }
+            else if(score >= beta && beta < INFINITY){
+                statistics.aspirationFailHighs++;
+                window *= 2;
+                beta = Math.min(score + window, INFINITY);
+            }
+            else{
+                return score;
+            }
+
+            // window has become too wide to be useful, search with a full window
+            if(window > ASPIRATION_MAX_WINDOW){
+                alpha = -INFINITY;
+                beta = INFINITY;
+            }
+        }
+    }
+
+    /**
+     * @return the statistics of the last search
+     */
+    public SearchStatistics getStatistics(){
+        return statistics;
+    }
+
+    /**
+     * @return the percentage of beta cut-offs caused by the first move searched (a measure of move ordering quality)
+     */
+    public double getFirstMoveCutOffRate(){
+        return statistics.getFirstMoveCutOffRate();
+    }
+
+    public int getInternalIterativeCount(){
+        return statistics.internalIterations;
+    }
+
+    /**
+     * @return the number of times the root was re-searched due to the score falling outside the aspiration window
+     */
+    public int getAspirationResearchCount(){
+        return statistics.getAspirationResearchCount();
+    }
+
+    public int getAspirationFailHighCount(){
+        return statistics.aspirationFailHighs;
+    }
+
+    public int getAspirationFailLowCount(){
+        return statistics.aspirationFailLows;
+    }
+
+    /**
+     * Searches the best lines at the root for MultiPV. Each line is searched with the moves of the lines already found
+     * excluded from the root, while sharing the transposition table and move ordering heuristics between lines.
+     * @param depth refers to the depth of the current iteration
+     * @param numberOfLines refers to the number of lines to search
+     * @return the number of lines which were completely searched before the search was stopped
+     */
+    private int searchMultiPV(int depth, int numberOfLines){
+        excludedRootMoves.clear();
+        int linesSearched = 0;
+
+        for(int pvIndex = 0; pvIndex < numberOfLines; pvIndex++){
+            // follow the PV of this line found in the previous iteration
+            System.arraycopy(multiPVLines[pvIndex], 0, PVMoves[0], 0, multiPVLength[pvIndex]);
+
+            int score = aspirationSearch(depth, multiPVScores[pvIndex]);
+            if(searchStopped || PVLength[0] == 0){
+                break;
+            }
+
+            System.arraycopy(PVMoves[0], 0, multiPVLines[pvIndex], 0, PVLength[0]);
+            multiPVLength[pvIndex] = PVLength[0];
+            multiPVScores[pvIndex] = score;
+            linesSearched++;
+
+            // exclude the move of this line when searching for the next line
+            excludedRootMoves.add(PVMoves[0][0]);
+        }
+        excludedRootMoves.clear();
+
+        sortMultiPV(linesSearched);
+        return linesSearched;
+    }
+
+    /**
+     * Sorts the lines found from best to worst score (insertion sort as there are only a few lines)
+     * @param numberOfLines refers to the number of lines to sort
+     */
+    private void sortMultiPV(int numberOfLines){
+        for(int i = 1; i < numberOfLines; i++){
+            for(int j = i; j > 0 && multiPVScores[j] > multiPVScores[j - 1]; j--){
+                short[] line = multiPVLines[j];
+                multiPVLines[j] = multiPVLines[j - 1];
+                multiPVLines[j - 1] = line;
+
+                int length = multiPVLength[j];
+                multiPVLength[j] = multiPVLength[j - 1];
+                multiPVLength[j - 1] = length;
+
+                int score = multiPVScores[j];
+                multiPVScores[j] = multiPVScores[j - 1];
+                multiPVScores[j - 1] = score;
+            }
+        }
+    }
+
+    /**
+     * Prints the information of a line of a completed iteration in UCI format
+     * @param depth refers to the depth of the iteration
+     * @param pvIndex refers to the index of the line (0 being the best line)
+     * @param numberOfLines refers to the number of lines searched. The MultiPV index is only printed for multiple lines
+     * @param timeElapsed refers to the time taken since the start of the search (in milliseconds)
+     */
+    private void printSearchInfo(int depth, int pvIndex, int numberOfLines, double timeElapsed){
+        int score = multiPVScores[pvIndex];
+        String scoreInfo;
+        if(score > CHECKMATE_THRESHOLD || score < -CHECKMATE_THRESHOLD){
+            // print out mate value instead of score
+            int movesToMate;
+            if(score > CHECKMATE_THRESHOLD){
+                movesToMate = ((CHECKMATE_SCORE - score) / 2) + 1;
+            }
+            else{
+                movesToMate = ((-CHECKMATE_SCORE - score) / 2) - 1;
+            }
+            scoreInfo = " score mate " + movesToMate;
+        }
+        else{
+            scoreInfo = " score cp " + score;
+        }
+
+        String searchInfo = "info depth " + depth +
+                " seldepth " + maxPly +
+                ((numberOfLines > 1) ? " multipv " + (pvIndex + 1) : "") +
+                scoreInfo +
+                " nodes " + searchNodeCount +
+                " nps " + (long) ((searchNodeCount * 1000L) / timeElapsed) +
+                " hashfull " + TT.hashfull() +
+                " ttCut " + cutOffCount +
+                " time " + (int) timeElapsed;
+
+        // PV line obtained from the search
+        StringBuilder PVLine = new StringBuilder(" pv ");
+        for (int i = 0; i < multiPVLength[pvIndex]; i++) {
+            PVLine.append(MoveGenerator.toString(multiPVLines[pvIndex][i]));
+            PVLine.append(" ");
+        }
+        System.out.println(searchInfo + PVLine);
+    }
+
+    /**
+     * @return the first move that can be searched at the root, used when no iteration was completed
+     */
+    private short getFallbackMove(){
+        if(limits.hasSearchMoves()){
+            return limits.searchMoves.get(0);
+        }
+        ArrayList<Short> moves = board.getAllLegalMoves();
+        return moves.isEmpty() ? 0 : moves.get(0);
+    }
+
+    /**
+     * Prints the best move along with the expected reply of the opponent (if any) which the GUI can ponder on
+     * @param bestMove refers to the best move found in the search
+     */
+    private void printBestMove(short bestMove){
+        if(PONDER && ponderMove != 0){
+            System.out.println("bestmove " + MoveGenerator.toString(bestMove) + " ponder " + MoveGenerator.toString(ponderMove));
+        }
+        else{
+            System.out.println("bestmove " + MoveGenerator.toString(bestMove));
+        }
+    }
+
+    /**
+     * Records the time limits of the search and the reason it stopped for the flight recorder
+     * @param timeUsed refers to the time taken by the search in milliseconds
+     */
+    private void commitTimeDecision(long timeUsed){
+        EngineEvents.SearchTimeDecision event = new EngineEvents.SearchTimeDecision();
+        if(!event.shouldCommit()){
+            return;
+        }
+        if(limits.isTimed()){
+            event.softLimit = timeManager.getSoftLimit();
+            event.hardLimit = timeManager.getHardLimit();
+            event.softLimitScale = timeManager.getSoftLimitScale();
+        }
+        event.timeUsed = timeUsed;
+        event.depth = statistics.getDepthCompleted();
+        event.stopReason = getStopReason();
+        event.commit();
+    }
+
+    /**
+     * The time manager only knows about the clock, other searches end on "stop" or on their own limits
+     * @return the reason the search stopped: a TimeManager.StopReason, STOP_COMMAND or SEARCH_COMPLETED
+     */
+    private String getStopReason(){
+        if(timeManager.getStopReason() != TimeManager.StopReason.NONE){
+            return timeManager.getStopReason().toString();
+        }
+        return searchStopped ? "STOP_COMMAND" : "SEARCH_COMPLETED";
+    }
+
+    /**
+     * Blocks a ponder / infinite search which has nothing left to search until "ponderhit" or "stop" is given
+     */
+    private void waitForSearchResult(){
+        while((isPondering || limits.infinite) && !searchStopped){
+            listen();
+            try{
+                Thread.sleep(5);
+            }
+            catch (InterruptedException interruptedException){
+                stopSearch();
+            }
+        }
+    }
+
+    /**
+     * Stops the search once the node limit or the hard time limit of the search has been reached.
+     * The clock is only read once every 1024 nodes
+     */
+    private void checkLimits(){
+        if(limits.hasNodeLimit() && searchNodeCount + nodeCount >= limits.nodes){
+            searchStopped = true;
+        }
+        if((nodeCount & TIME_CHECK_INTERVAL) == 0 && timeManager.isHardLimitReached()){
+            searchStopped = true;
+        }
+    }
+
+    /**
+     * Converts an ongoing ponder search into a timed search when the opponent plays the expected move.
+     * The search continues from where it is, keeping all the information gathered while pondering
+     */
+    public void ponderHit(){
+        if(!isPondering){
+            return;
+        }
+        isPondering = false;
+        statistics.ponderHits++;
+
+        // start the clock with the time allocated for the move
+        timeManager.start();
+    }
+
     /**
      * Listens for a "stop" or "quit" command during search
      */
@@ -223,6 +715,9 @@ public class Search {
                 if(input.equals("stop")){
                     stopSearch();
                 }
+                else if(input.equals("ponderhit")){
+                    ponderHit();
+                }
                 else if(input.equals("quit")){
                     listener.close();
                     System.exit(0);
@@ -239,156 +734,296 @@ public class Search {
      */
     public void stopSearch(){
         searchStopped = true;
+        isPondering = false;   // a ponder search that is stopped is discarded by the GUI
         System.out.println("stopping...");
     }
 
     /**
-     * search for best move found for a given depth
-     * @param depth refers to the depth to search a position
-     * @return the best move found
+     * Searches a node, dispatching to the PV search if the window is open (beta - alpha > 1) and to the zero-window
+     * search otherwise
+     * @param depth refers to the remaining depth to search
+     * @param searchPly refers to the ply of the node from the root
+     * @return the score of the node from the view of the side to move
      */
-    public short depthSearch(int depth){
-        System.out.println("Target Depth: " + depth);
+    public int negamax(int depth, int searchPly, int alpha, int beta){
+        if(beta - alpha > 1){
+            return pvSearch(depth, searchPly, alpha, beta);
+        }
+        return zeroWindowSearch(depth, searchPly, beta);
+    }
 
-        double startTime = System.currentTimeMillis(), iterationEndTime, timeElapsedSinceStart = 1;
-        short currentMove, bestMove = 0;
-        int totalNodeCount = 0;
-        searchStopped = false;
+    /**
+     * Searches a PV node (open window), which lies on the principal variation expected by the search. PV nodes are
+     * rare, so no transposition table cut-offs or forward pruning are done, keeping the PV line intact and exact.
+     * The first move is searched with the full window and the remaining moves with a zero window, re-searching a move
+     * with the full window if it raises alpha
+     */
+    private int pvSearch(int depth, int searchPly, int alpha, int beta){
+        // ensure that the ply searched is not greater than max ply due to extensions
+        if(searchPly > MAX_PLY - 1){
+            return EvalUtilities.evaluate(board);
+        }
 
-        killerMoves = new short[2][MAX_PLY];
-        historyMoves = new short[64][64];
+        PVLength[searchPly] = searchPly;
 
-        // iterative deepening search
-        for (int curr_depth = 1; curr_depth <= depth; curr_depth++) {
+        // check for following draw conditions:
+        //      - fifty move rule
+        //      - 3-move repetition (avoid playing any same position more than once)
+        //      - insufficient material draw
+        if(searchPly != 0 && isDraw(board)){
+            // avoid taking draws unless down by more than contempt factor
+            return CONTEMPT_FACTOR;
+        }
 
-            // reset all variables for each iteration
-            resetSearch();
+        // Probe transposition table for the stored best move, used for move ordering and singular extensions
+        long zobrist = board.getZobristHash();
+        short prevBestMove = -1;
+        TranspositionTable.TTEntry ttEntry = null;
+        int ttScore = 0;
+        if(TT.containsKey(zobrist)){
+            ttEntry = TT.getEntry(zobrist);
+            prevBestMove = ttEntry.bestMove;
+            ttScore = scoreFromTT(ttEntry.eval, searchPly);
+        }
 
-            followPVLine = true;
+        // every 32767 (in binary: 0b111111111111111) nodes, check for UCI commands
+        if((nodeCount & 32767) == 0){
+            listen();
+        }
+
+        // do not enter quiescence search while in check
+        boolean isKingChecked = board.isKingChecked();
+
+        // Check extension
+        if(isKingChecked){
+            depth++;
+        }
 
-            // search for bestmove for current iteration
-            int score = negamax(curr_depth, 0, -INFINITY, INFINITY);
+        // evaluate the positions after doing a quiescence search to remove horizon effect (search all captures)
+        if(depth <= 0){
+            ply = searchPly;
+            return quiescenceSearch(alpha, beta, 0);
+        }
 
-            // best move found in current iteration
-            currentMove = PVMoves[0][0];
+        nodeCount++;
+        checkLimits();
 
-            // end time of this iteration
-            iterationEndTime = System.currentTimeMillis();
+        // static evaluation is not used for pruning at PV nodes, but tells the child nodes if the side is improving
+        stack.setStaticEval(searchPly, isKingChecked ? SearchStack.NO_EVAL : EvalUtilities.evaluate(board), isKingChecked);
 
-            // time taken to get to this iteration (to determine if we should continue to search next iteration in given time)
-            timeElapsedSinceStart = iterationEndTime - startTime;
-            if(timeElapsedSinceStart == 0){
-                timeElapsedSinceStart = 1;  // prevent division by 0 when calculating nps
+        // Internal iterative reduction / deepening when there is no TT move to search first
+        if(prevBestMove <= 0 && !isKingChecked && searchPly != 0){
+            if(IID_MODE == IIDMode.REDUCTION && depth >= IIR_MIN_DEPTH){
+                // without a TT move the node is likely to be ordered poorly, search it shallower
+                depth--;
+                statistics.internalIterations++;
+            }
+            else if(IID_MODE == IIDMode.DEEPENING && depth >= IID_MIN_DEPTH){
+                // search at a reduced depth to find a best move to search first
+                pvSearch(depth - IID_DEPTH_REDUCTION, searchPly, alpha, beta);
+                // the reduced search shares this ply, discard its PV
+                PVLength[searchPly] = searchPly;
+                statistics.internalIterations++;
+
+                if (searchStopped) {
+                    return 0;
+                }
+                if(TT.containsKey(zobrist)){
+                    prevBestMove = TT.getEntry(zobrist).bestMove;
+                }
+            }
+        }
+
+        ArrayList<Short> encodedMoves = board.getAllLegalMoves();
+
+        if(searchPly == 0){
+            // restrict the root moves searched to the moves given by "go searchmoves"
+            if(limits.hasSearchMoves()){
+                encodedMoves.retainAll(limits.searchMoves);
+            }
+            // exclude the moves of the lines already found in MultiPV
+            if(!excludedRootMoves.isEmpty()){
+                encodedMoves.removeAll(excludedRootMoves);
+            }
+        }
+
+        // Game has ended
+        if(encodedMoves.size() == 0){
+            // checkmate found
+            if(isKingChecked){
+                return -CHECKMATE_SCORE + searchPly;
+            }
+            // draw (stalemate)
+            return DRAW_SCORE - CONTEMPT_FACTOR;
+        }
+
+        int singularExtension = 0;
+        if(searchPly != 0){
+            singularExtension = getSingularExtension(depth, searchPly, beta, ttEntry, ttScore, encodedMoves);
+            if (searchStopped) {
+                return 0;
+            }
+            if(singularExtension == MULTI_CUT){
+                return ttScore - (SINGULAR_MARGIN * depth);
+            }
+        }
+
+        // if we are following the previous pv line, enable pv scoring for move ordering
+        // to prioritise searching the PV moves
+        if(followPVLine){
+            followPVLine = false;
+
+            // look through the move list to check if we have a pv move.
+            for(Short moves : encodedMoves){
+                // if PV move is found, enable pv move scoring for move ordering and continue following PV line
+                if (moves == PVMoves[0][searchPly]) {
+                    followPVLine = true;
+                    pvMoveScoring = true;
+                    break;
+                }
+            }
+        }
+
+        short bestMove = 0;
+        int bestScore = Integer.MIN_VALUE, moveCount = 0, searchedScore;
+        int quietCount = 0, captureCount = 0;
+
+        // set to check for fail-low node
+        byte moveFlag = TranspositionTable.UPPERBOUND_TYPE;
+
+        for (Short encodedMove : MoveOrdering.orderMoves(encodedMoves, this, searchPly, prevBestMove)) {
+            moveCount++;
+            setPlyMove(searchPly, encodedMove);
+
+            // extend the TT move if it is singular
+            int newDepth = depth - 1;
+            if(singularExtension > 0 && encodedMove == ttEntry.bestMove){
+                newDepth += singularExtension;
+            }
+
+            Move move = new Move(board, encodedMove);
+            move.makeMove();
+
+            // if this is a pv move, do a full search
+            if (moveCount == 1) {
+                searchedScore = -pvSearch(newDepth, searchPly + 1, -beta, -alpha);
+            } else {
+                // late move reductions
+                int reduction = 0;
+                if (depth >= REDUCTION_LIMIT
+                        && !MoveGenerator.isPromotion(encodedMove)
+                        && !MoveGenerator.isCapture(encodedMove)
+                        && !isKingChecked) {
+
+                    // do reduce search based on reduction factor with a narrowed window
+                    reduction = REDUCTION_TABLE[depth][moveCount];
+                    stack.get(searchPly).reduction = reduction;
+                    searchedScore = -zeroWindowSearch(newDepth - reduction, searchPly + 1, -alpha);
+                    stack.get(searchPly).reduction = 0;
+                } else {
+                    // do a full-depth search
+                    searchedScore = alpha + 1; // a trick to ensure full-depth search is continued
+                }
+
+                // PVS search
+                if (searchedScore > alpha) {
+                    if(reduction > 0){
+                        statistics.lmrResearches++;
+                    }
+                    searchedScore = -zeroWindowSearch(newDepth, searchPly + 1, -alpha);
+
+                    // re-search the move
+                    if (searchedScore > alpha && searchedScore < beta) {
+                        statistics.pvsResearches++;
+                        searchedScore = -pvSearch(newDepth, searchPly + 1, -beta, -alpha);
+                    }
+                }
+            }
+
+            move.unMake();
+
+            // time is up
+            if (searchStopped) {
+                return 0;
             }
 
-            // if the current search was not stopped by clock, use the results of the search
-            if (!searchStopped) {
-                // set best move to the best move of current iteration
-                bestMove = currentMove;
+            if(searchedScore >= bestScore){
+                bestScore = searchedScore;
+                bestMove = encodedMove;
+            }
 
-                String searchInfo;
-                // information obtained from the search
-                if(score > CHECKMATE_THRESHOLD || score < -CHECKMATE_THRESHOLD){
-                    // print out mate value instead of score
-                    String mate = "";
-                    if(score > CHECKMATE_THRESHOLD){
-                        int movesToMate = ((CHECKMATE_SCORE - score) / 2) + 1;
-                        mate = String.valueOf(movesToMate);
-                    }
-                    if(score < -CHECKMATE_THRESHOLD){
-                        int movesToMate = ((-CHECKMATE_SCORE - score) / 2) - 1;
-                        mate = String.valueOf(movesToMate);
-                    }
-                    searchInfo = "info depth " + curr_depth +
-                            " seldepth " + maxPly +
-                            " score mate " + mate +
-                            " nodes " + (totalNodeCount += nodeCount) +
-                            " nps " + (long) ((totalNodeCount * 1000L) / timeElapsedSinceStart) +
-                            " ttCut " + cutOffCount +
-                            " time " + (int) timeElapsedSinceStart;
-                }
-                else{
-                    searchInfo = "info depth " + curr_depth +
-                            " seldepth " + maxPly +
-                            " score cp " + score +
-                            " nodes " + (totalNodeCount += nodeCount) +
-                            " nps " + (long) ((totalNodeCount * 1000L) / timeElapsedSinceStart) +
-                            " ttCut " + cutOffCount +
-                            " time " + (int) timeElapsedSinceStart;
-                }
+            if(bestScore > alpha){
+                alpha = bestScore;
+                // a better move has been found, switch to storing exact evaluation
+                moveFlag = TranspositionTable.EXACT_TYPE;
+                updatePV(searchPly, encodedMove);
+            }
 
-                // PV line obtained from the search
-                StringBuilder PVLine = new StringBuilder(" pv ");
-                for (int i = 0; i < PVLength[0]; i++) {
-                    PVLine.append(MoveGenerator.toString(PVMoves[0][i]));
-                    PVLine.append(" ");
-                }
+            // fail-hard beta cut off has occurred
+            if(alpha >= beta) {
+                onBetaCutOff(encodedMove, depth, searchPly, moveCount, quietCount, captureCount);
+                TT.recordEntry(zobrist, encodedMove, (byte) depth, scoreToTT(beta, searchPly), TranspositionTable.LOWERBOUND_TYPE);
+                return beta;
+            }
 
-                System.out.println(searchInfo + PVLine);
+            // keep track of the moves searched which did not cause a cut-off
+            if(MoveGenerator.isCapture(encodedMove)){
+                capturesSearched[searchPly][captureCount++] = encodedMove;
+            }
+            else{
+                quietsSearched[searchPly][quietCount++] = encodedMove;
             }
         }
 
-        System.out.println("bestmove " + MoveGenerator.toString(bestMove));
-        System.out.println("Time Taken: " + timeElapsedSinceStart);
-        System.out.println("Transposition Table Size: " + TT.size());
-
-        searchStopped = false;
+        // store the best move at current position
+        TT.recordEntry(zobrist, bestMove, (byte) depth, scoreToTT(bestScore, searchPly), moveFlag);
 
-        return bestMove;
+        return bestScore;
     }
 
-    public int negamax(int depth, int searchPly, int alpha, int beta){
+    /**
+     * Searches a non-PV node with a zero window (alpha = beta - 1), which only tests whether the node fails high.
+     * Almost all nodes of the search are zero-window nodes, where transposition table cut-offs and all forward pruning
+     * techniques are used and no PV line is written. The node is never the root.
+     * @param beta refers to the bound tested, the node fails high if its score is at least beta
+     */
+    private int zeroWindowSearch(int depth, int searchPly, int beta){
+        int alpha = beta - 1;
+
         // ensure that the ply searched is not greater than max ply due to extensions
         if(searchPly > MAX_PLY - 1){
             return EvalUtilities.evaluate(board);
         }
 
+        // no PV line is written, but a PV parent failing high on this node copies its (empty) line
         PVLength[searchPly] = searchPly;
 
-        // check for following draw conditions:
-        //      - fifty move rule
-        //      - 3-move repetition (avoid playing any same position more than once)
-        //      - insufficient material draw
-        if(searchPly != 0 && isDraw(board)){
+        if(isDraw(board)){
             // avoid taking draws unless down by more than contempt factor
             return CONTEMPT_FACTOR;
         }
 
-        boolean isPV = (beta - alpha) > 1;
+        // the move excluded from this node when verifying if the TT move is singular
+        short excludedMove = stack.get(searchPly).excludedMove;
 
         // Probe transposition table if current position has already been evaluated before
         long zobrist = board.getZobristHash();
         short prevBestMove = -1;
-        if(searchPly != 0 && !isPV && TT.containsKey(zobrist)){
-            TranspositionTable.TTEntry entry = TT.getEntry(zobrist);
+        TranspositionTable.TTEntry ttEntry = null;
+        int ttScore = 0;
+        if(excludedMove == 0 && TT.containsKey(zobrist)){
+            ttEntry = TT.getEntry(zobrist);
+            prevBestMove = ttEntry.bestMove;
+            ttScore = scoreFromTT(ttEntry.eval, searchPly);
 
             // if the entry depth is greater than current depth, use the stored evaluation as it is more accurate due to deeper search
-            if(entry.depth >= depth){
-                int entryScore = entry.eval;
-
-                // adjust to current depth if a score is within checkmate threshold and checkmate is found
-                if(entryScore > CHECKMATE_THRESHOLD){
-                    entryScore += searchPly;
-                }
-                else if(entryScore < -CHECKMATE_THRESHOLD){
-                    entryScore -= searchPly;
-                }
-
-                if(entry.entry_TYPE == TranspositionTable.EXACT_TYPE){
-                    cutOffCount++;
-                    return entry.eval;
-                }
-                else if(entry.entry_TYPE == TranspositionTable.LOWERBOUND_TYPE){
-                    alpha = Math.max(alpha, entryScore);
-                }
-                else if(entry.entry_TYPE == TranspositionTable.UPPERBOUND_TYPE){
-                    beta = Math.min(beta, entryScore);
-                }
-                if(alpha >= beta){
+            if(ttEntry.depth >= depth){
+                if(ttEntry.entry_TYPE == TranspositionTable.EXACT_TYPE
+                        || (ttEntry.entry_TYPE == TranspositionTable.LOWERBOUND_TYPE && ttScore >= beta)
+                        || (ttEntry.entry_TYPE == TranspositionTable.UPPERBOUND_TYPE && ttScore <= alpha)){
                     cutOffCount++;
-                    return entryScore;
+                    return ttScore;
                 }
-                prevBestMove = entry.bestMove;
             }
         }
 
@@ -408,58 +1043,81 @@ public class Search {
         // evaluate the positions after doing a quiescence search to remove horizon effect (search all captures)
         if(depth <= 0){
             ply = searchPly;
-            return quiescenceSearch(alpha, beta);
+            return quiescenceSearch(alpha, beta, 0);
         }
 
         nodeCount++;
+        checkLimits();
+
+        // static evaluation of the node, used by the forward pruning techniques
+        int staticEval = isKingChecked ? SearchStack.NO_EVAL : EvalUtilities.evaluate(board);
+        stack.setStaticEval(searchPly, staticEval, isKingChecked);
+        boolean improving = stack.get(searchPly).improving;
+
+        // forward pruning of the whole node is not done when in check or when verifying a singular move
+        boolean canPruneNode = !isKingChecked && excludedMove == 0;
 
         // static null move pruning
-        if(!isKingChecked && !isPV && beta > -CHECKMATE_THRESHOLD){
-            int staticEval = EvalUtilities.evaluate(board);
-            int scoreMargin = STATIC_NULL_MOVE_PRUNING_MARGIN * depth;
-            if((staticEval - scoreMargin) >= beta){
-                return beta;
-            }
+        if(canPruneNode && beta > -CHECKMATE_THRESHOLD && pruning.isStaticNullMovePrunable(depth, staticEval, beta)){
+            pruning.recordPrune(ForwardPruning.Technique.STATIC_NULL_MOVE);
+            return beta;
         }
 
-        // null move pruning
-        if(depth >= 3 && !isPV && !isDoingNullMove && !isKingChecked && !isEndGame()){
-            int reduction;
-            if(depth > 6){  // we can afford to reduce more if there is still a lot of depth to search
-                reduction = DEEPER_REDUCTION_CONSTANT;
+        // razoring: the static evaluation is far below alpha, verify with a quiescence search if any capture can save the node
+        if(canPruneNode && pruning.isRazoringCandidate(depth, staticEval, alpha)){
+            ply = searchPly;
+            int score = quiescenceSearch(alpha, beta, 0);
+            if (searchStopped) {
+                return 0;
             }
-            else{
-                reduction = STANDARD_REDUCTION_CONSTANT;
+            if(score <= alpha){
+                pruning.recordPrune(ForwardPruning.Technique.RAZORING);
+                return alpha;
             }
+        }
+
+        // null move pruning
+        if(canPruneNode && !stack.isAfterNullMove(searchPly) && !isEndGame() && pruning.isNullMoveAllowed(depth)){
+            int reduction = pruning.getNullMoveReduction(depth);
             Move nullMove = new Move(board, (short) 0);
-            isDoingNullMove = true;
+            stack.setNullMove(searchPly);
             nullMove.makeNullMove();
-            int score = -negamax(depth - 1 - reduction, searchPly + 1, -beta, -beta + 1);
+            int score = -zeroWindowSearch(depth - 1 - reduction, searchPly + 1, -alpha);
             nullMove.unmakeNullMove();
-            isDoingNullMove = false;
+            stack.get(searchPly).isNullMove = false;
 
             // time is up
-            if (timer.isTimeUp() || searchStopped) {
-                searchStopped = true;
+            if (searchStopped) {
                 return 0;
             }
 
             if (score >= beta){
+                pruning.recordPrune(ForwardPruning.Technique.NULL_MOVE);
                 return beta;
             }
         }
 
+        // ProbCut: if a good capture beats beta by a margin in a reduced search, the full search is expected to beat beta
+        if(canPruneNode && Math.abs(beta) < CHECKMATE_THRESHOLD && pruning.isProbCutAllowed(depth)
+                && probCut(depth, searchPly, beta, staticEval, prevBestMove)){
+            pruning.recordPrune(ForwardPruning.Technique.PROBCUT);
+            return beta;
+        }
+
+        // Internal iterative reduction when there is no TT move to search first (deepening is only done at PV nodes)
+        if(prevBestMove <= 0 && excludedMove == 0 && !isKingChecked
+                && IID_MODE == IIDMode.REDUCTION && depth >= IIR_MIN_DEPTH){
+            depth--;
+            statistics.internalIterations++;
+        }
+
         // extended futility pruning
         boolean enableFutilityPruning = false;
-        if(!isPV && depth <= 3 && !isKingChecked && alpha < CHECKMATE_THRESHOLD){
+        if(!isKingChecked && alpha < CHECKMATE_THRESHOLD){
             // do not do futility pruning when in check or if last move was a capture
             if(board.getPreviousMove() != null && !MoveGenerator.isCapture(board.getPreviousMove().getEncodedMove())){
-                // static evaluation
-                int staticEval = EvalUtilities.evaluate(board);
                 // test if static evaluation + a margin is better than alpha, if it is not, prune last ply
-                if ((staticEval + futilityMargin[depth]) <= alpha){
-                    enableFutilityPruning = true;
-                }
+                enableFutilityPruning = pruning.isFutile(depth, staticEval, alpha);
             }
         }
 
@@ -475,76 +1133,85 @@ public class Search {
             return DRAW_SCORE - CONTEMPT_FACTOR;
         }
 
-        // if we are following the previous pv line, enable pv scoring for move ordering
-        // to prioritise searching the PV moves
-        if(followPVLine){
-            followPVLine = false;
+        if(excludedMove != 0){
+            encodedMoves.remove((Short) excludedMove);
+            // the excluded move is the only legal move, so it is singular
+            if(encodedMoves.isEmpty()){
+                return alpha;
+            }
+        }
 
-            // look through the move list to check if we have a pv move.
-            for(Short moves : encodedMoves){
-                // if PV move is found, enable pv move scoring for move ordering and continue following PV line
-                if (moves == PVMoves[0][searchPly]) {
-                    followPVLine = true;
-                    pvMoveScoring = true;
-                    break;
-                }
+        int singularExtension = 0;
+        if(excludedMove == 0){
+            singularExtension = getSingularExtension(depth, searchPly, beta, ttEntry, ttScore, encodedMoves);
+            if (searchStopped) {
+                return 0;
+            }
+            if(singularExtension == MULTI_CUT){
+                return ttScore - (SINGULAR_MARGIN * depth);
             }
         }
 
         short bestMove = 0;
         int bestScore = Integer.MIN_VALUE, moveCount = 0, searchedScore;
-
-        // set to check for fail-low node
-        byte moveFlag = TranspositionTable.UPPERBOUND_TYPE;
+        int quietCount = 0, captureCount = 0;
 
         for (Short encodedMove : MoveOrdering.orderMoves(encodedMoves, this, searchPly, prevBestMove)) {
             moveCount++;
+
+            // forward pruning of the move, applied after the move is made if it does not give check
+            ForwardPruning.Technique pruneBy = null;
+            if(moveCount > 1 && !isKingChecked && bestScore > -CHECKMATE_THRESHOLD){
+                pruneBy = getMovePruning(encodedMove, depth, searchPly, moveCount, improving, enableFutilityPruning);
+            }
+
+            setPlyMove(searchPly, encodedMove);
+
+            // extend the TT move if it is singular
+            int newDepth = depth - 1;
+            if(singularExtension > 0 && encodedMove == ttEntry.bestMove){
+                newDepth += singularExtension;
+            }
+
             Move move = new Move(board, encodedMove);
             move.makeMove();
 
-            // if this is a pv move, do a full search
             if (moveCount == 1) {
-                searchedScore = -negamax(depth - 1, searchPly + 1, -beta, -alpha);
+                searchedScore = -zeroWindowSearch(newDepth, searchPly + 1, -alpha);
             } else {
-                boolean deliversCheck = board.isKingChecked();
-                if (!deliversCheck && enableFutilityPruning
-                        && !MoveGenerator.isCapture(encodedMove)
-                        && !MoveGenerator.isPromotion(encodedMove)){
-                    // prune this move if futility pruning is enabled and if the move is not a capture/promotion and does not deliver check.
+                if (pruneBy != null && !board.isKingChecked()){
+                    // prune this move as it does not deliver check
+                    pruning.recordPrune(pruneBy);
                     move.unMake();
                     continue;
                 }
 
-                // late move reductions
-                if (depth >= REDUCTION_LIMIT && moveCount > 1
+                // late move reductions, re-searched at full depth if the reduced search fails high
+                if (depth >= REDUCTION_LIMIT
                         && !MoveGenerator.isPromotion(encodedMove)
                         && !MoveGenerator.isCapture(encodedMove)
                         && !isKingChecked) {
-
-                    // do reduce search based on reduction factor with a narrowed window
+                    // reduce more when the side to move is not improving
                     int reduction = REDUCTION_TABLE[depth][moveCount];
-                    searchedScore = -negamax(depth - 1 - reduction, searchPly + 1, -alpha - 1, -alpha);
-                } else {
-                    // do a full-depth search
-                    searchedScore = alpha + 1; // a trick to ensure full-depth search is continued
-                }
-
-                // PVS search
-                if (searchedScore > alpha) {
-                    searchedScore = -negamax(depth - 1, searchPly + 1, -alpha - 1, -alpha);
-
-                    // re-search the move
-                    if (searchedScore > alpha && searchedScore < beta) {
-                        searchedScore = -negamax(depth - 1, searchPly + 1, -beta, -alpha);
+                    if(!improving && reduction > 0){
+                        reduction++;
+                    }
+                    stack.get(searchPly).reduction = reduction;
+                    searchedScore = -zeroWindowSearch(newDepth - reduction, searchPly + 1, -alpha);
+                    stack.get(searchPly).reduction = 0;
+                    if (searchedScore > alpha && reduction > 0) {
+                        statistics.lmrResearches++;
+                        searchedScore = -zeroWindowSearch(newDepth, searchPly + 1, -alpha);
                     }
+                } else {
+                    searchedScore = -zeroWindowSearch(newDepth, searchPly + 1, -alpha);
                 }
             }
 
             move.unMake();
 
             // time is up
-            if (timer.isTimeUp() || searchStopped) {
-                searchStopped = true;
+            if (searchStopped) {
                 return 0;
             }
 
@@ -553,53 +1220,281 @@ public class Search {
                 bestMove = encodedMove;
             }
 
-            if(bestScore > alpha){
-                alpha = bestScore;
-                // a better move has been found, switch to storing exact evaluation
-                moveFlag = TranspositionTable.EXACT_TYPE;
-
-                // if the move is a quiet move, store as history move
-                if(!MoveGenerator.isCapture(encodedMove)){
-                    // store history move data
-                    historyMoves[MoveGenerator.getStart(encodedMove)][MoveGenerator.getEnd(encodedMove)] += (depth * depth);
+            // fail-hard beta cut off has occurred
+            if(bestScore >= beta) {
+                onBetaCutOff(encodedMove, depth, searchPly, moveCount, quietCount, captureCount);
+                // the result of an exclusion search does not hold for the position
+                if(excludedMove == 0){
+                    TT.recordEntry(zobrist, encodedMove, (byte) depth, scoreToTT(beta, searchPly), TranspositionTable.LOWERBOUND_TYPE);
                 }
+                return beta;
+            }
 
-                // write PV move
-                PVMoves[searchPly][searchPly] = encodedMove;
-                // copy move from deeper ply into a current ply's line
-                if (PVLength[searchPly + 1] - searchPly + 1 >= 0){
-                    System.arraycopy(PVMoves[searchPly + 1], searchPly + 1, PVMoves[searchPly], searchPly + 1, PVLength[searchPly + 1] - searchPly + 1);
-                }
-                PVLength[searchPly] = PVLength[searchPly + 1];
+            // keep track of the moves searched which did not cause a cut-off
+            if(MoveGenerator.isCapture(encodedMove)){
+                capturesSearched[searchPly][captureCount++] = encodedMove;
+            }
+            else{
+                quietsSearched[searchPly][quietCount++] = encodedMove;
             }
+        }
 
-            // fail-hard beta cut off has occurred
-            if(alpha >= beta) {
-                // store in transposition table
-                TT.recordEntry(board.getZobristHash(), encodedMove, (byte) depth, beta, TranspositionTable.LOWERBOUND_TYPE);
-
-                // if the move that causes a cutoff is a quiet move (not a capture) store move as killer moves
-                if(!MoveGenerator.isCapture(encodedMove)){
-                    // store killer move
-                    killerMoves[1][searchPly] = killerMoves[0][searchPly];
-                    killerMoves[0][searchPly] = encodedMove;
-                }
+        // no move raised alpha, store the best move found with an upper bound
+        if(excludedMove == 0){
+            TT.recordEntry(zobrist, bestMove, (byte) depth, scoreToTT(bestScore, searchPly), TranspositionTable.UPPERBOUND_TYPE);
+        }
 
-                return beta;
+        return bestScore;
+    }
+
+    /**
+     * Singular extension: the TT move is expected to fail high (lower bound from a deep enough search).
+     * Search all other moves at a reduced depth against a lowered bound. If none of them reach the bound, the TT move
+     * is singular (the only good move) and is extended. If another move also beats beta, at least two moves fail high
+     * and the node is cut (multi-cut)
+     * @param moves refers to the legal moves of the node
+     * @return the extension of the TT move, or MULTI_CUT if the node can be cut
+     */
+    private int getSingularExtension(int depth, int searchPly, int beta, TranspositionTable.TTEntry ttEntry, int ttScore,
+                                     ArrayList<Short> moves){
+        if(depth < SINGULAR_MIN_DEPTH || ttEntry == null
+                || ttEntry.bestMove == 0 || ttEntry.entry_TYPE != TranspositionTable.LOWERBOUND_TYPE
+                || ttEntry.depth < depth - SINGULAR_TT_DEPTH_MARGIN
+                || Math.abs(ttScore) >= CHECKMATE_THRESHOLD
+                || !moves.contains(ttEntry.bestMove)){
+            return 0;
+        }
+
+        int singularBeta = ttScore - (SINGULAR_MARGIN * depth);
+        stack.get(searchPly).excludedMove = ttEntry.bestMove;
+        int singularScore = zeroWindowSearch((depth - 1) / 2, searchPly, singularBeta);
+        stack.get(searchPly).excludedMove = 0;
+        // the exclusion search shares this ply, discard its PV
+        PVLength[searchPly] = searchPly;
+
+        if (searchStopped) {
+            return 0;
+        }
+
+        if(singularScore < singularBeta){
+            statistics.singularExtensions++;
+            return 1;
+        }
+        else if(singularBeta >= beta){
+            statistics.multiCuts++;
+            return MULTI_CUT;
+        }
+        return 0;
+    }
+
+    /**
+     * Records the piece and end square of the move made at a ply for the continuation history of the next plies
+     */
+    private void setPlyMove(int searchPly, short move){
+        stack.setMove(searchPly, move, board.getTile(MoveGenerator.getStart(move)).getPiece());
+    }
+
+    /**
+     * Writes the move at a ply followed by the PV line of the next ply into the PV line of the ply
+     */
+    private void updatePV(int searchPly, short move){
+        PVMoves[searchPly][searchPly] = move;
+        // copy move from deeper ply into a current ply's line
+        if (PVLength[searchPly + 1] - searchPly + 1 >= 0){
+            System.arraycopy(PVMoves[searchPly + 1], searchPly + 1, PVMoves[searchPly], searchPly + 1, PVLength[searchPly + 1] - searchPly + 1);
+        }
+        PVLength[searchPly] = PVLength[searchPly + 1];
+    }
+
+    /**
+     * Updates the cut-off statistics, killer moves, counter move and histories when a move causes a beta cut-off
+     * @param moveCount refers to the number of moves searched at the node, including the cut-off move
+     */
+    private void onBetaCutOff(short move, int depth, int searchPly, int moveCount, int quietCount, int captureCount){
+        statistics.betaCutOffs++;
+        if(moveCount == 1){
+            statistics.firstMoveCutOffs++;
+        }
+
+        // if the move that causes a cutoff is a quiet move (not a capture) store move as killer moves
+        if(!MoveGenerator.isCapture(move)){
+            // store killer move
+            if(killerMoves[0][searchPly] != move){
+                killerMoves[1][searchPly] = killerMoves[0][searchPly];
+                killerMoves[0][searchPly] = move;
+            }
+            // store as the refutation of the opponent's previous move
+            if(searchPly > 0){
+                history.setCounterMove(stack.getMovedPiece(searchPly - 1), stack.getMoveEnd(searchPly - 1), move);
             }
         }
 
-        // store the best move at current position
-        TT.recordEntry(board.getZobristHash(), bestMove, (byte) depth, bestScore, moveFlag);
+        updateHistories(move, depth, searchPly, quietCount, captureCount);
+    }
 
-        return bestScore;
+    /**
+     * Decides if a move (which is not the first move in a non-PV node that is not in check) can be pruned
+     * @param enableFutilityPruning refers to whether no quiet move at the node is expected to raise the score above alpha
+     * @return the technique pruning the move, null if the move has to be searched
+     */
+    private ForwardPruning.Technique getMovePruning(short move, int depth, int searchPly, int moveCount, boolean improving,
+                                                    boolean enableFutilityPruning){
+        boolean isCapture = MoveGenerator.isCapture(move);
+        if(MoveGenerator.isPromotion(move)){
+            return null;
+        }
+
+        if(!isCapture){
+            if(enableFutilityPruning){
+                return ForwardPruning.Technique.FUTILITY;
+            }
+            if(pruning.isLateMove(depth, moveCount, improving)){
+                return ForwardPruning.Technique.LATE_MOVE;
+            }
+            boolean isKiller = move == killerMoves[0][searchPly] || move == killerMoves[1][searchPly];
+            if(!isKiller && pruning.hasBadHistory(depth, MoveOrdering.getQuietHistoryScore(move, board.getTile(MoveGenerator.getStart(move)).getPiece(), this, searchPly))){
+                return ForwardPruning.Technique.HISTORY;
+            }
+        }
+
+        // skip moves which lose too much material in the exchange on their end square
+        if(pruning.isSEEPruningAllowed(depth) && !see.isAtLeast(move, pruning.getSEEThreshold(depth, isCapture))){
+            return ForwardPruning.Technique.SEE;
+        }
+        return null;
+    }
+
+    /**
+     * ProbCut: searches captures which win enough material to beat the ProbCut bound (beta + margin), first with a
+     * quiescence search and then with a reduced depth search
+     * @return true if a capture beats the ProbCut bound, in which case the node is expected to fail high
+     */
+    private boolean probCut(int depth, int searchPly, int beta, int staticEval, short ttMove){
+        int probCutBeta = pruning.getProbCutBeta(beta);
+        int probCutDepth = pruning.getProbCutDepth(depth);
+
+        ArrayList<Short> captures = MoveOrdering.orderQuiescence(board.getAllCaptures(), this, searchPly, ttMove);
+        for (Short capture : captures) {
+            // the capture has to win at least the difference between the ProbCut bound and the static evaluation
+            if(!MoveGenerator.isCapture(capture) || !see.isAtLeast(capture, probCutBeta - staticEval)){
+                continue;
+            }
+
+            setPlyMove(searchPly, capture);
+
+            Move move = new Move(board, capture);
+            move.makeMove();
+
+            // verify with a quiescence search before the more expensive reduced search
+            ply = searchPly + 1;
+            int score = -quiescenceSearch(-probCutBeta, -probCutBeta + 1, 0);
+            if(score >= probCutBeta && probCutDepth > 0){
+                score = -zeroWindowSearch(probCutDepth, searchPly + 1, -probCutBeta + 1);
+            }
+            move.unMake();
+
+            if (searchStopped) {
+                return false;
+            }
+            if(score >= probCutBeta){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Mate scores are stored in the transposition table relative to the position (number of plies to mate from the
+     * position) rather than to the root, so that they stay correct when the position is reached at a different ply
+     * @param score refers to the score relative to the root
+     * @param searchPly refers to the ply of the position
+     * @return the score to be stored in the transposition table
+     */
+    private static int scoreToTT(int score, int searchPly){
+        if(score > CHECKMATE_THRESHOLD){
+            return score + searchPly;
+        }
+        else if(score < -CHECKMATE_THRESHOLD){
+            return score - searchPly;
+        }
+        return score;
+    }
+
+    /**
+     * @param score refers to the score stored in the transposition table
+     * @param searchPly refers to the ply of the position
+     * @return the score relative to the root
+     */
+    private static int scoreFromTT(int score, int searchPly){
+        if(score > CHECKMATE_THRESHOLD){
+            return score - searchPly;
+        }
+        else if(score < -CHECKMATE_THRESHOLD){
+            return score + searchPly;
+        }
+        return score;
+    }
+
+    /**
+     * Rewards the move causing a beta cut-off in the history tables and penalises the moves searched before it
+     * @param cutOffMove refers to the move causing the cut-off
+     * @param depth refers to the depth of the node
+     * @param searchPly refers to the ply of the node
+     * @param quietCount refers to the number of quiet moves searched before the cut-off move
+     * @param captureCount refers to the number of captures searched before the cut-off move
+     */
+    private void updateHistories(short cutOffMove, int depth, int searchPly, int quietCount, int captureCount){
+        int bonus = MoveHistory.getBonus(depth);
+
+        if(MoveGenerator.isCapture(cutOffMove)){
+            updateCaptureHistory(cutOffMove, bonus);
+        }
+        else{
+            updateQuietHistory(cutOffMove, searchPly, bonus);
+            for(int i = 0; i < quietCount; i++){
+                updateQuietHistory(quietsSearched[searchPly][i], searchPly, -bonus);
+            }
+        }
+
+        // captures searched first did not cause a cut-off
+        for(int i = 0; i < captureCount; i++){
+            updateCaptureHistory(capturesSearched[searchPly][i], -bonus);
+        }
+    }
+
+    private void updateQuietHistory(short move, int searchPly, int bonus){
+        int piece = MoveHistory.getPieceIndex(board.getTile(MoveGenerator.getStart(move)).getPiece());
+        history.updateQuiet(piece, MoveGenerator.getEnd(move),
+                stack.getMovedPiece(searchPly - 1), stack.getMoveEnd(searchPly - 1),
+                stack.getMovedPiece(searchPly - 2), stack.getMoveEnd(searchPly - 2), bonus);
+    }
+
+    private void updateCaptureHistory(short move, int bonus){
+        int end = MoveGenerator.getEnd(move);
+        int piece = MoveHistory.getPieceIndex(board.getTile(MoveGenerator.getStart(move)).getPiece());
+        history.updateCapture(piece, end, getCapturedType(move), bonus);
+    }
+
+    /**
+     * @return the piece type (ordinal) captured by a capture move
+     */
+    public int getCapturedType(short move){
+        if(MoveGenerator.getMoveType(move) == 5){
+            // enpassant capture
+            return Piece.PieceType.PAWN.ordinal();
+        }
+        return board.getTile(MoveGenerator.getEnd(move)).getPiece().getType().ordinal();
     }
 
     /**
      * Evaluates the current position on the board by continuing to search all possible capture lines to reduce horizon effect
      * i.e. Prevents the AI from blundering a piece due to search being cut at a certain depth causing it to not "see" opponent attacks
+     *
+     * When the side to move is in check, standing pat is not allowed and all evasions are searched instead. Quiet moves
+     * giving check are searched at the first quiescence ply if QSEARCH_CHECKS is enabled.
+     * @param qsDepth refers to the depth of the quiescence search, 0 at the first quiescence ply and negative after
      */
-    private int quiescenceSearch(int alpha, int beta){
+    private int quiescenceSearch(int alpha, int beta, int qsDepth){
         //info depth 11 seldepth 26 score cp -86 nodes 1386950 nps 124916 ttCut 28247 time 11103 pv e2a6 e6d5 c3d5 f6d5 e4d5 e7e5 e1f1 e8g8 a6b7 e5b2 a1d1 h3g2 f1g2
 
         // every 32767 (in binary: 0b111111111111111) nodes, check for UCI commands
@@ -611,84 +1506,159 @@ public class Search {
             return 0;
         }
 
-        int stand_pat = EvalUtilities.evaluate(board);
-
         // ensure that the ply searched is not greater than max ply due to extensions
         if(ply > MAX_PLY - 1){
-            return stand_pat;
+            return EvalUtilities.evaluate(board);
         }
 
-        if(stand_pat >= beta){
-            return beta; // fail hard
+        // Probe transposition table, every entry has been searched at least as deep as the quiescence search (depth 0)
+        long zobrist = board.getZobristHash();
+        short prevBestMove = -1;
+        if(TT.containsKey(zobrist)){
+            TranspositionTable.TTEntry entry = TT.getEntry(zobrist);
+            prevBestMove = entry.bestMove;
+            int ttScore = scoreFromTT(entry.eval, ply);
+            if(entry.entry_TYPE == TranspositionTable.EXACT_TYPE
+                    || (entry.entry_TYPE == TranspositionTable.LOWERBOUND_TYPE && ttScore >= beta)
+                    || (entry.entry_TYPE == TranspositionTable.UPPERBOUND_TYPE && ttScore <= alpha)){
+                cutOffCount++;
+                // fail hard
+                return Math.max(alpha, Math.min(ttScore, beta));
+            }
         }
 
-        // Delta pruning
-        int BIG_DELTA = Queen.QUEEN_MG_VALUE; // queen value
+        boolean isKingChecked = board.isKingChecked();
+        ArrayList<Short> moves;
 
-        if (stand_pat < (alpha - BIG_DELTA)) {
-            return alpha;
+        if(isKingChecked){
+            nodeCount++;
+            statistics.qsearchNodes++;
+            checkLimits();
+
+            // search all evasions, as the side to move may not be able to stand pat
+            moves = board.getAllLegalMoves();
+            if(moves.isEmpty()){
+                return -CHECKMATE_SCORE + ply;
+            }
+            moves = MoveOrdering.orderMoves(moves, this, ply, prevBestMove);
         }
-        nodeCount++;
+        else{
+            int stand_pat = EvalUtilities.evaluate(board);
 
-        short prevBestMove = -1;
-        if(TT.containsKey(board.getZobristHash())){
-            TranspositionTable.TTEntry entry = TT.getEntry(board.getZobristHash());
-            prevBestMove = entry.bestMove;
-        }
+            if(stand_pat >= beta){
+                return beta; // fail hard
+            }
+
+            // Delta pruning
+            int BIG_DELTA = Queen.QUEEN_MG_VALUE; // queen value
+
+            if (stand_pat < (alpha - BIG_DELTA)) {
+                return alpha;
+            }
+            nodeCount++;
+            statistics.qsearchNodes++;
+            checkLimits();
+
+            if(alpha < stand_pat){
+                alpha = stand_pat;
+            }
 
-        if(alpha < stand_pat){
-            alpha = stand_pat;
+            moves = MoveOrdering.orderQuiescence(board.getAllCaptures(), this, ply, prevBestMove);
         }
 
-        ArrayList<Short> captureMoves = board.getAllCaptures();
+        int originalAlpha = alpha;
+        short bestMove = 0;
+        int[] moveOrderScores = moveScores[ply];
+
+        for (int i = 0; i < moves.size(); i++) {
+            // captures losing material (SEE < 0) are ordered last and are not searched
+            if(!isKingChecked && MoveOrdering.isLosingCapture(moveOrderScores[i])){
+                break;
+            }
 
-        for (Short encodedMove : MoveOrdering.orderQuiescence(captureMoves, this, prevBestMove)) {
+            short encodedMove = moves.get(i);
             Move move = new Move(board, encodedMove);
 
             ply++;
             maxPly = Math.max(maxPly, ply);
             move.makeMove();
-            int searchedScore = -quiescenceSearch(-beta, -alpha);
+            int searchedScore = -quiescenceSearch(-beta, -alpha, qsDepth - 1);
             move.unMake();
             ply--;
 
             // time is up
-            if (timer.isTimeUp() || searchStopped) {
-                searchStopped = true;
+            if (searchStopped) {
                 return 0;
             }
 
             if(searchedScore > alpha){
                 alpha = searchedScore;
-                stand_pat = searchedScore;
+                bestMove = encodedMove;
                 // cut-off has occurred
                 if(searchedScore >= beta) {
-                    TT.recordEntry(board.getZobristHash(), encodedMove, (byte) 0, beta, TranspositionTable.LOWERBOUND_TYPE);
+                    TT.recordEntry(zobrist, encodedMove, (byte) 0, scoreToTT(beta, ply), TranspositionTable.LOWERBOUND_TYPE);
                     return beta;
                 }
-                TT.recordEntry(board.getZobristHash(), encodedMove, (byte) 0, alpha, TranspositionTable.UPPERBOUND_TYPE);
             }
-            else if(searchedScore > stand_pat){
-                stand_pat = searchedScore;
-                TT.recordEntry(board.getZobristHash(), encodedMove, (byte) 0, stand_pat, TranspositionTable.UPPERBOUND_TYPE);
+        }
+
+        // quiet moves giving check at the first quiescence ply
+        if(QSEARCH_CHECKS && qsDepth == 0 && !isKingChecked){
+            for (Short encodedMove : board.getAllLegalMoves()) {
+                if(MoveGenerator.isCapture(encodedMove) || MoveGenerator.isPromotion(encodedMove)
+                        || !see.isAtLeast(encodedMove, 0)){
+                    continue;
+                }
+
+                Move move = new Move(board, encodedMove);
+                move.makeMove();
+                if(!board.isKingChecked()){
+                    move.unMake();
+                    continue;
+                }
+
+                ply++;
+                maxPly = Math.max(maxPly, ply);
+                int searchedScore = -quiescenceSearch(-beta, -alpha, qsDepth - 1);
+                ply--;
+                move.unMake();
+
+                if (searchStopped) {
+                    return 0;
+                }
+
+                if(searchedScore > alpha){
+                    alpha = searchedScore;
+                    bestMove = encodedMove;
+                    if(searchedScore >= beta) {
+                        TT.recordEntry(zobrist, encodedMove, (byte) 0, scoreToTT(beta, ply), TranspositionTable.LOWERBOUND_TYPE);
+                        return beta;
+                    }
+                }
             }
         }
+
+        // store the result, exact if a move raised alpha
+        if(bestMove != 0){
+            TT.recordEntry(zobrist, bestMove, (byte) 0, scoreToTT(alpha, ply), TranspositionTable.EXACT_TYPE);
+        }
+        else{
+            TT.recordEntry(zobrist, prevBestMove > 0 ? prevBestMove : 0, (byte) 0, scoreToTT(originalAlpha, ply), TranspositionTable.UPPERBOUND_TYPE);
+        }
         return alpha;
     }
 
     /**
-     * Used to reset all counters / tables to prepare for next search
+     * Used to reset all counters / tables to prepare for next search (the seldepth is reset by the iteration instead)
      */
     private void resetSearch(){
         ply = 0;
-        maxPly = 0;
         nodeCount = 0;
         cutOffCount = 0;
-        PVMoves = new short[MAX_PLY][MAX_PLY];
+        // PV moves of the previous iteration are kept so that the PV line can be followed in the next iteration
         PVLength = new int[MAX_PLY];
         followPVLine = false;
         pvMoveScoring = false;
-        isDoingNullMove = false;
     }
 
     /**
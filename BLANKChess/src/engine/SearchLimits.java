@@ -0,0 +1,86 @@
+import java.util.ArrayList;
+
+/**
+ * Holds the limits of a single search as given by the UCI "go" command.
+ * A limit which is not set is left at its default value and will not end the search.
+ */
+public class SearchLimits {
+    public static final int MAX_DEPTH = Integer.MAX_VALUE;
+
+    // time allocated for the move (in seconds), 0 if the search is not timed
+    public double searchDuration;
+
+    // clock information used to allocate time for the move (in seconds)
+    public double timeLeft;
+    public double increment;
+    public int movesToGo;
+
+    public int depth;
+    public long nodes;
+    public int mate;
+
+    // restricts the search to these root moves. An empty list searches all moves
+    public final ArrayList<Short> searchMoves;
+
+    public boolean infinite;
+    public boolean ponder;
+
+    public SearchLimits(){
+        this.searchDuration = 0;
+        this.timeLeft = 0;
+        this.increment = 0;
+        this.movesToGo = 0;
+        this.depth = MAX_DEPTH;
+        this.nodes = 0;
+        this.mate = 0;
+        this.searchMoves = new ArrayList<>();
+        this.infinite = false;
+        this.ponder = false;
+    }
+
+    /**
+     * @param searchDuration refers to the time allocated for the search (in seconds)
+     * @return limits for a search that runs for a fixed amount of time
+     */
+    public static SearchLimits timed(double searchDuration){
+        SearchLimits limits = new SearchLimits();
+        limits.searchDuration = searchDuration;
+        return limits;
+    }
+
+    /**
+     * @param depth refers to the depth to search a position
+     * @return limits for a search that ends once the given depth has been searched
+     */
+    public static SearchLimits fixedDepth(int depth){
+        SearchLimits limits = new SearchLimits();
+        limits.depth = depth;
+        return limits;
+    }
+
+    /**
+     * @return true if the search has a deadline on the clock
+     */
+    public boolean isTimed(){
+        return !infinite && (searchDuration > 0 || timeLeft > 0 || increment > 0);
+    }
+
+    public boolean hasNodeLimit(){
+        return nodes > 0;
+    }
+
+    public boolean hasMateLimit(){
+        return mate > 0;
+    }
+
+    public boolean hasSearchMoves(){
+        return !searchMoves.isEmpty();
+    }
+
+    /**
+     * @return true if only the clock limits the search, in which case a book move may be played instead
+     */
+    public boolean isStandardSearch(){
+        return !infinite && !ponder && depth == MAX_DEPTH && !hasNodeLimit() && !hasMateLimit() && !hasSearchMoves();
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Per-ply state of the search, from the root (ply 0) to the deepest ply searched. An entry is written by the node at
+ * its ply and read by the nodes below it (i.e. continuation history, improving, consecutive null moves).
+ * All entries are allocated once when the searcher is created, so no objects are allocated per node.
+ */
+public class SearchStack {
+    // static evaluation of a node in check, which is not evaluated
+    public static final int NO_EVAL = Integer.MIN_VALUE;
+
+    public static class Entry {
+        public int staticEval;          // static evaluation of the node, NO_EVAL when in check
+        public boolean inCheck;
+        public boolean improving;       // static evaluation is better than at the side's previous move
+        public short move;              // move currently searched at the ply (0 for a null move)
+        public int movedPiece;          // MoveHistory index of the piece moved, NO_PIECE for a null move
+        public int moveEnd;
+        public boolean isNullMove;
+        public int reduction;           // late move reduction applied to the move currently searched
+        public short excludedMove;      // move excluded from the node when verifying if the TT move is singular
+
+        public void clear(){
+            staticEval = NO_EVAL;
+            inCheck = false;
+            improving = false;
+            move = 0;
+            movedPiece = MoveHistory.NO_PIECE;
+            moveEnd = 0;
+            isNullMove = false;
+            reduction = 0;
+            excludedMove = 0;
+        }
+    }
+
+    private final Entry[] entries;
+
+    /**
+     * @param size refers to the number of plies of the stack
+     */
+    public SearchStack(int size){
+        this.entries = new Entry[size];
+        for(int ply = 0; ply < size; ply++){
+            entries[ply] = new Entry();
+            entries[ply].clear();
+        }
+    }
+
+    public Entry get(int ply){
+        return entries[ply];
+    }
+
+    /**
+     * Clears all entries before a new search
+     */
+    public void clear(){
+        for(Entry entry : entries){
+            entry.clear();
+        }
+    }
+
+    /**
+     * Records the static evaluation of a node and whether the side to move is improving, which is the case if the
+     * static evaluation is better than at the side's previous move (2 plies before), or 4 plies before if the side was
+     * in check at its previous move
+     * @param staticEval refers to the static evaluation of the node, NO_EVAL when in check
+     */
+    public void setStaticEval(int ply, int staticEval, boolean inCheck){
+        Entry entry = entries[ply];
+        entry.staticEval = staticEval;
+        entry.inCheck = inCheck;
+
+        if(inCheck){
+            entry.improving = false;
+        }
+        else if(ply >= 2 && entries[ply - 2].staticEval != NO_EVAL){
+            entry.improving = staticEval > entries[ply - 2].staticEval;
+        }
+        else if(ply >= 4 && entries[ply - 4].staticEval != NO_EVAL){
+            entry.improving = staticEval > entries[ply - 4].staticEval;
+        }
+        else{
+            entry.improving = true;
+        }
+    }
+
+    /**
+     * Records the move searched at a ply
+     * @param piece refers to the piece making the move
+     */
+    public void setMove(int ply, short move, Piece piece){
+        Entry entry = entries[ply];
+        entry.move = move;
+        entry.movedPiece = MoveHistory.getPieceIndex(piece);
+        entry.moveEnd = MoveGenerator.getEnd(move);
+        entry.isNullMove = false;
+        entry.reduction = 0;
+    }
+
+    public void setNullMove(int ply){
+        Entry entry = entries[ply];
+        entry.move = 0;
+        entry.movedPiece = MoveHistory.NO_PIECE;
+        entry.moveEnd = 0;
+        entry.isNullMove = true;
+        entry.reduction = 0;
+    }
+
+    /**
+     * @return true if the move made before the ply was a null move (two null moves in a row prove nothing)
+     */
+    public boolean isAfterNullMove(int ply){
+        return ply > 0 && entries[ply - 1].isNullMove;
+    }
+
+    /**
+     * @return the MoveHistory index of the piece moved at the ply, NO_PIECE before the root or for a null move
+     */
+    public int getMovedPiece(int ply){
+        return (ply >= 0) ? entries[ply].movedPiece : MoveHistory.NO_PIECE;
+    }
+
+    /**
+     * @return the end square of the move made at the ply, 0 before the root
+     */
+    public int getMoveEnd(int ply){
+        return (ply >= 0) ? entries[ply].moveEnd : 0;
+    }
+}
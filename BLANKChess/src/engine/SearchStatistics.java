@@ -0,0 +1,198 @@
+/**
+ * Statistics of a single search, used to diagnose why a position searches slowly:
+ *
+ *      - Transposition table: sampled hashfull, probe hit rate, stores and overwrites of other positions
+ *      - Move ordering: rate of beta cut-offs caused by the first move searched
+ *      - Tree shape: effective branching factor of each iteration (smoothed over two plies) and the share of
+ *        quiescence nodes
+ *      - Forward pruning: nodes / moves pruned by each technique and multi-cuts
+ *      - Re-searches: aspiration window fail highs / lows, late move reduction and PVS re-searches, along with the
+ *        singular extensions and internal iterative reductions / deepenings applied
+ *      - Pondering: rate of ponder searches converted into a timed search by "ponderhit", over all searches of the
+ *        searcher (these counters are not reset between searches)
+ *
+ * Counters are incremented by the searcher and are only read when reporting, so collecting them costs an increment.
+ */
+public class SearchStatistics {
+    private final TranspositionTable TT;
+    private final ForwardPruning pruning;
+
+    public long qsearchNodes;
+    public long betaCutOffs;
+    public long firstMoveCutOffs;
+    public int aspirationFailHighs;
+    public int aspirationFailLows;
+    public long lmrResearches;          // reduced moves searched again at full depth after failing high
+    public long pvsResearches;          // moves searched again with the full window after a zero-window fail high
+    public int singularExtensions;
+    public int multiCuts;               // nodes cut by several moves failing high in the singular extension search
+    public int internalIterations;      // nodes without a TT move reduced / deepened by internal iterative search
+    public int ponderSearches;          // "go ponder" searches since the searcher was created
+    public int ponderHits;              // ponder searches converted into a timed search by "ponderhit"
+
+    // total number of nodes searched at the end of each iteration (index by depth)
+    private final long[] iterationNodes;
+    private int depthCompleted;
+
+    // total number of nodes searched by the whole search, including an iteration cut short by "stop" or the clock
+    private long totalNodes;
+
+    /**
+     * @param TT refers to the transposition table used by the searcher
+     * @param pruning refers to the forward pruning stage of the searcher
+     * @param maxDepth refers to the maximum depth of an iteration
+     */
+    public SearchStatistics(TranspositionTable TT, ForwardPruning pruning, int maxDepth){
+        this.TT = TT;
+        this.pruning = pruning;
+        this.iterationNodes = new long[maxDepth + 1];
+    }
+
+    /**
+     * Resets all counters at the start of a search
+     */
+    public void reset(){
+        qsearchNodes = 0;
+        betaCutOffs = 0;
+        firstMoveCutOffs = 0;
+        aspirationFailHighs = 0;
+        aspirationFailLows = 0;
+        lmrResearches = 0;
+        pvsResearches = 0;
+        singularExtensions = 0;
+        multiCuts = 0;
+        internalIterations = 0;
+        depthCompleted = 0;
+        totalNodes = 0;
+        TT.resetStatistics();
+        pruning.resetCounts();
+    }
+
+    /**
+     * Records the end of an iteration
+     * @param depth refers to the depth of the iteration
+     * @param totalNodes refers to the number of nodes searched since the start of the search
+     */
+    public void recordIteration(int depth, long totalNodes){
+        if(depth < iterationNodes.length){
+            iterationNodes[depth] = totalNodes;
+            depthCompleted = depth;
+        }
+    }
+
+    /**
+     * Records the end of the search, the counters of the search cover every node searched up to this point
+     * @param totalNodes refers to the number of nodes searched by the whole search
+     */
+    public void recordSearchEnd(long totalNodes){
+        this.totalNodes = totalNodes;
+    }
+
+    public int getDepthCompleted(){
+        return depthCompleted;
+    }
+
+    /**
+     * @return the total number of nodes searched when the last iteration completed
+     */
+    public long getNodes(){
+        return iterationNodes[depthCompleted];
+    }
+
+    /**
+     * @return the total number of nodes searched by the whole search, which the per-node counters are compared with
+     */
+    public long getTotalNodes(){
+        return totalNodes;
+    }
+
+    /**
+     * @return the number of nodes searched by an iteration alone
+     */
+    public long getIterationNodes(int depth){
+        if(depth < 1 || depth > depthCompleted){
+            return 0;
+        }
+        return iterationNodes[depth] - iterationNodes[depth - 1];
+    }
+
+    /**
+     * The nodes of consecutive iterations swing between odd and even depths (the side to move at the horizon changes),
+     * so the branching factor is taken over two plies: sqrt(nodes of the iteration / nodes of the iteration 2 plies
+     * shallower), the geometric mean of the two ratios
+     * @return the effective branching factor of an iteration, 0 if it cannot be calculated (depth 1 and 2)
+     */
+    public double getEffectiveBranchingFactor(int depth){
+        long previousNodes = getIterationNodes(depth - 2);
+        if(previousNodes == 0){
+            return 0;
+        }
+        return Math.sqrt((double) getIterationNodes(depth) / previousNodes);
+    }
+
+    /**
+     * @return the percentage of nodes searched by the quiescence search, out of all nodes of the search
+     */
+    public double getQSearchNodeShare(){
+        return (totalNodes == 0) ? 0 : (qsearchNodes * 100.0) / totalNodes;
+    }
+
+    /**
+     * @return the percentage of beta cut-offs caused by the first move searched (how well the moves are ordered)
+     */
+    public double getFirstMoveCutOffRate(){
+        return (betaCutOffs == 0) ? 0 : (firstMoveCutOffs * 100.0) / betaCutOffs;
+    }
+
+    /**
+     * @return the percentage of ponder searches that were converted into a timed search by "ponderhit"
+     */
+    public double getPonderHitRate(){
+        return (ponderSearches == 0) ? 0 : (ponderHits * 100.0) / ponderSearches;
+    }
+
+    public int getAspirationResearchCount(){
+        return aspirationFailHighs + aspirationFailLows;
+    }
+
+    public int getHashfull(){
+        return TT.hashfull();
+    }
+
+    public double getTTHitRate(){
+        return TT.getHitRate();
+    }
+
+    public double getTTOverwriteRate(){
+        return TT.getOverwriteRate();
+    }
+
+    public long getPrunedCount(ForwardPruning.Technique technique){
+        return pruning.getPrunedCount(technique);
+    }
+
+    /**
+     * Prints the statistics as UCI "info string" lines
+     */
+    public void printInfo(){
+        StringBuilder branchingFactors = new StringBuilder();
+        for(int depth = 3; depth <= depthCompleted; depth++){
+            branchingFactors.append(" ").append(String.format("%.2f", getEffectiveBranchingFactor(depth)));
+        }
+
+        System.out.println("info string stats nodes " + totalNodes + " qnodes " + qsearchNodes
+                + " (" + String.format("%.1f", getQSearchNodeShare()) + "%) firstmovecut "
+                + String.format("%.1f", getFirstMoveCutOffRate()) + "% ebf" + branchingFactors
+                + ((ponderSearches == 0) ? "" : " ponderhit " + String.format("%.1f", getPonderHitRate()) + "% ("
+                + ponderHits + "/" + ponderSearches + ")"));
+        System.out.println("info string stats tt hashfull " + getHashfull() + " probes " + TT.getProbeCount()
+                + " hits " + TT.getHitCount() + " (" + String.format("%.1f", getTTHitRate()) + "%) stores "
+                + TT.getStoreCount() + " overwrites " + TT.getOverwriteCount()
+                + " (" + String.format("%.1f", getTTOverwriteRate()) + "%)");
+        System.out.println("info string stats pruned " + pruning.getSummary() + ", MultiCut " + multiCuts);
+        System.out.println("info string stats researches aspiration " + getAspirationResearchCount()
+                + " (high " + aspirationFailHighs + " / low " + aspirationFailLows + ") lmr " + lmrResearches
+                + " pvs " + pvsResearches + " singular " + singularExtensions + " iid " + internalIterations
+                + " (" + Search.IID_MODE + ")");
+    }
+}
@@ -0,0 +1,165 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Debug mode which checks the incrementally updated state of the board after every make / unmake of a move (in the
+ * search, quiescence search, null moves, perft and move generation alike):
+ *
+ *      - after a move is made, the zobrist hash, piece lists, piece positions, king positions and castling rights
+ *        are recomputed from scratch and compared with the incremental state
+ *      - after a move is unmade, the position, clocks, castled flags and previous move must also be exactly as
+ *        before the move was made
+ *
+ * The first divergence is reported with the FEN, the move and the moves played to reach the position, and stops the
+ * engine with an IllegalStateException.
+ *
+ * Enabled with "java -Dblank.verifyState=true ...". ENABLED is a static final constant, so when it is false the JIT
+ * removes the checks entirely and they cost nothing.
+ */
+public class StateVerifier {
+    public static final boolean ENABLED = Boolean.getBoolean("blank.verifyState");
+
+    /**
+     * Captures the state of the board before a move which has to be restored when the move is unmade
+     * @return the snapshot of the state
+     */
+    public static String snapshot(Board board){
+        return FENUtilities.convertBoardToFEN(board) + " castled " + board.kingHasCastled(true) + " "
+                + board.kingHasCastled(false) + " hash " + board.getZobristHash();
+    }
+
+    /**
+     * Checks the board after a move is made
+     * @param move refers to the move made on the board
+     */
+    public static void verifyMake(Board board, Move move){
+        String message = checkState(board, "after makeMove");
+        if(message != null){
+            report(board, move, message);
+        }
+    }
+
+    /**
+     * Checks the board after a move is unmade
+     * @param move refers to the move unmade
+     * @param snapshot refers to the snapshot of the board taken before the move was made
+     * @param previousMove refers to the previous move of the board before the move was made
+     */
+    public static void verifyUnmake(Board board, Move move, String snapshot, Move previousMove){
+        String message = checkState(board, "after unMake");
+        if(message == null && !snapshot(board).equals(snapshot)){
+            message = "after unMake: state " + snapshot(board) + " differs from the state before the move " + snapshot;
+        }
+        if(message == null && board.getPreviousMove() != previousMove){
+            message = "after unMake: previous move is not restored";
+        }
+        if(message != null){
+            report(board, move, message);
+        }
+    }
+
+    /**
+     * Compares the incrementally updated state of the board with the state recomputed from scratch
+     * @param when refers to when the board is checked, added to the description of a difference
+     * @return the first difference found, null if there is none
+     */
+    public static String checkState(Board board, String when){
+        Set<Integer> whiteTiles = new HashSet<>();
+        Set<Integer> blackTiles = new HashSet<>();
+        int whiteKingPosition = -1;
+        int blackKingPosition = -1;
+        for(int position = 0; position < 64; position++){
+            Piece piece = board.getTile(position).getPiece();
+            if(piece == null){
+                continue;
+            }
+            if(piece.getPosition() != position){
+                return when + ": piece on " + FENUtilities.convertIndexToRankAndFile(position) + " has position "
+                        + FENUtilities.convertIndexToRankAndFile(piece.getPosition());
+            }
+            (piece.isWhite() ? whiteTiles : blackTiles).add(position);
+            if(piece.isKing()){
+                if(piece.isWhite()){
+                    whiteKingPosition = position;
+                }
+                else{
+                    blackKingPosition = position;
+                }
+            }
+        }
+
+        if(!whiteTiles.equals(getTiles(board.getWhitePieces()))){
+            return when + ": white piece list " + getTiles(board.getWhitePieces()) + " differs from the board " + whiteTiles;
+        }
+        if(!blackTiles.equals(getTiles(board.getBlackPieces()))){
+            return when + ": black piece list " + getTiles(board.getBlackPieces()) + " differs from the board " + blackTiles;
+        }
+        if(board.getWhiteKingPosition() != whiteKingPosition || board.getBlackKingPosition() != blackKingPosition){
+            return when + ": king positions " + board.getWhiteKingPosition() + " / " + board.getBlackKingPosition()
+                    + " differ from the board " + whiteKingPosition + " / " + blackKingPosition;
+        }
+        if(board.getZobristHash() != Zobrist.generateHash(board)){
+            return when + ": incremental zobrist hash differs from the recomputed hash";
+        }
+
+        // castling rights which cannot be used any more (moved king or rook) must have been removed
+        String castling = FENUtilities.convertBoardToFEN(board).split(" ")[2];
+        if(!castling.equals(getPossibleCastling(board, castling))){
+            return when + ": castling rights " + castling + " kept without the king or rook on its square";
+        }
+        return null;
+    }
+
+    private static Set<Integer> getTiles(PieceList pieceList){
+        Set<Integer> tiles = new HashSet<>();
+        for(int i = 0; i < pieceList.getCount(); i++){
+            tiles.add(pieceList.occupiedTiles[i]);
+        }
+        return tiles;
+    }
+
+    /**
+     * @return the castling rights with the rights removed whose king or rook is not on its starting square
+     */
+    private static String getPossibleCastling(Board board, String castling){
+        StringBuilder possible = new StringBuilder();
+        String[] rights = {"K", "Q", "k", "q"};
+        int[][] squares = {{60, 63}, {60, 56}, {4, 7}, {4, 0}};
+        for(int i = 0; i < rights.length; i++){
+            if(!castling.contains(rights[i])){
+                continue;
+            }
+            boolean isWhite = (i < 2);
+            Piece king = board.getTile(squares[i][0]).getPiece();
+            Piece rook = board.getTile(squares[i][1]).getPiece();
+            if(king != null && king.isKing() && king.isWhite() == isWhite
+                    && rook != null && rook.isRook() && rook.isWhite() == isWhite){
+                possible.append(rights[i]);
+            }
+        }
+        return (possible.length() == 0) ? "-" : possible.toString();
+    }
+
+    /**
+     * @return the moves played to reach the position, from the first move made on the board ("0000" for a null move)
+     */
+    public static String getMoveHistory(Board board){
+        ArrayList<String> history = new ArrayList<>();
+        for(Move move = board.getPreviousMove(); move != null; move = move.getPreviousMove()){
+            history.add(move.getEncodedMove() == 0 ? "0000" : MoveGenerator.toString(move.getEncodedMove()));
+        }
+        Collections.reverse(history);
+        return String.join(" ", history);
+    }
+
+    private static void report(Board board, Move move, String message){
+        String report = "State verification failed " + message
+                + "\nFEN: " + FENUtilities.convertBoardToFEN(board)
+                + "\nMove: " + (move.getEncodedMove() == 0 ? "0000" : MoveGenerator.toString(move.getEncodedMove()))
+                + "\nMoves: " + getMoveHistory(board);
+        System.err.println(report);
+        throw new IllegalStateException(report);
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Manages the time used by a search with a soft and a hard limit.
+ *
+ *      - Soft limit: checked after each completed iteration. No new iteration is started once the time used
+ *                    exceeds the soft limit, scaled by how stable the best move and score have been.
+ *      - Hard limit: checked during the search (amortised over the node count). The search is aborted immediately.
+ *
+ * All timings are measured with System.nanoTime().
+ */
+public class TimeManager {
+    private static final long NANOSECONDS_PER_MILLISECOND = 1000000L;
+
+    // soft limit is a fraction of the time allocated per move, the hard limit a multiple of it
+    private static final double SOFT_LIMIT_RATIO = 0.7;
+    private static final double HARD_LIMIT_RATIO = 4.0;
+
+    // never use more than this fraction of the remaining time on a single move
+    private static final double MAX_TIME_LEFT_RATIO = 0.4;
+
+    // scales the soft limit based on the number of iterations the best move has stayed the same
+    private static final double[] STABILITY_SCALE = {2.2, 1.4, 1.1, 0.9, 0.8, 0.7};
+
+    // extend the soft limit when the score drops, up to double the time for a drop of MAX_SCORE_DROP or more
+    private static final int MAX_SCORE_DROP = 100;
+
+    public enum StopReason {
+        NONE, SOFT_LIMIT, HARD_LIMIT, STABLE_BEST_MOVE
+    }
+
+    private long startTime;
+    private long softLimit;
+    private long hardLimit;
+    private boolean isStarted;
+    private boolean useStability;
+
+    private short previousBestMove;
+    private int previousScore;
+    private int bestMoveStability;
+    private double softLimitScale;
+    private StopReason stopReason;
+
+    public TimeManager(){
+        this.isStarted = false;
+        this.stopReason = StopReason.NONE;
+    }
+
+    /**
+     * Calculates the soft and hard limits of a search.
+     * A fixed search duration (i.e. "go movetime") uses the full duration for both limits. Otherwise, the time is
+     * allocated from the time left on the clock, the increment and the moves to the next time control (if known)
+     * @param limits refers to the limits of the search
+     */
+    public void init(SearchLimits limits){
+        isStarted = false;
+        stopReason = StopReason.NONE;
+        previousBestMove = 0;
+        previousScore = 0;
+        bestMoveStability = 0;
+        softLimit = Long.MAX_VALUE;
+        hardLimit = Long.MAX_VALUE;
+        softLimitScale = 1;
+        useStability = false;
+
+        if(!limits.isTimed()){
+            return;
+        }
+
+        if(limits.searchDuration > 0){
+            // search for exactly the given time
+            softLimit = (long) (limits.searchDuration * 1000);
+            hardLimit = softLimit;
+        }
+        else{
+            // lag time and moves to go are the ones of the game clock
+            long timeLeft = (long) (limits.timeLeft * 1000) - Clock.LAG_TIME;
+            long increment = (long) (limits.increment * 1000);
+            int movesLeft = (limits.movesToGo > 0) ? Math.min(limits.movesToGo, Clock.MOVES_TO_GO) : Clock.MOVES_TO_GO;
+
+            long timePerMove = (timeLeft / movesLeft) + ((increment * 3) / 4);
+            long maximumTime = (limits.movesToGo == 1) ? timeLeft : (long) (timeLeft * MAX_TIME_LEFT_RATIO);
+
+            softLimit = Math.min((long) (timePerMove * SOFT_LIMIT_RATIO), maximumTime);
+            hardLimit = Math.min((long) (timePerMove * HARD_LIMIT_RATIO), maximumTime);
+            useStability = true;
+        }
+
+        // ensure that there is always some time to search
+        softLimit = Math.max(softLimit, 1) * NANOSECONDS_PER_MILLISECOND;
+        hardLimit = Math.max(hardLimit, 1) * NANOSECONDS_PER_MILLISECOND;
+    }
+
+    /**
+     * Starts counting down the time of the search
+     */
+    public void start(){
+        startTime = System.nanoTime();
+        isStarted = true;
+    }
+
+    public boolean isStarted(){
+        return isStarted;
+    }
+
+    /**
+     * @return true if the search has to be aborted immediately
+     */
+    public boolean isHardLimitReached(){
+        if(isStarted && System.nanoTime() - startTime >= hardLimit){
+            stopReason = StopReason.HARD_LIMIT;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Updates the soft limit scaling after an iteration has completed.
+     *      - Best move stable over several iterations: stop earlier
+     *      - Best move changed: extend
+     *      - Score dropped compared to previous iteration: extend
+     * @param depth refers to the depth of the completed iteration
+     * @param bestMove refers to the best move found in the iteration
+     * @param score refers to the score of the best move
+     */
+    public void onIterationComplete(int depth, short bestMove, int score){
+        if(depth > 1 && bestMove == previousBestMove){
+            bestMoveStability = Math.min(bestMoveStability + 1, STABILITY_SCALE.length - 1);
+        }
+        else{
+            bestMoveStability = 0;
+        }
+
+        softLimitScale = STABILITY_SCALE[bestMoveStability];
+
+        if(depth > 1 && score < previousScore){
+            int scoreDrop = Math.min(previousScore - score, MAX_SCORE_DROP);
+            softLimitScale *= 1 + ((double) scoreDrop / MAX_SCORE_DROP);
+        }
+
+        previousBestMove = bestMove;
+        previousScore = score;
+    }
+
+    /**
+     * @return true if no new iteration should be started
+     */
+    public boolean shouldStop(){
+        if(!isStarted){
+            return false;
+        }
+        if(isHardLimitReached()){
+            return true;
+        }
+        long elapsed = System.nanoTime() - startTime;
+        if(useStability){
+            if(elapsed >= (long) (softLimit * softLimitScale)){
+                stopReason = (softLimitScale < 1) ? StopReason.STABLE_BEST_MOVE : StopReason.SOFT_LIMIT;
+                return true;
+            }
+            return false;
+        }
+        if(elapsed >= softLimit){
+            stopReason = StopReason.SOFT_LIMIT;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the time elapsed since the time manager was started (in milliseconds)
+     */
+    public long getElapsedTime(){
+        if(!isStarted){
+            return 0;
+        }
+        return (System.nanoTime() - startTime) / NANOSECONDS_PER_MILLISECOND;
+    }
+
+    /**
+     * @return the soft limit of the search (in milliseconds)
+     */
+    public long getSoftLimit(){
+        return softLimit / NANOSECONDS_PER_MILLISECOND;
+    }
+
+    /**
+     * @return the hard limit of the search (in milliseconds)
+     */
+    public long getHardLimit(){
+        return hardLimit / NANOSECONDS_PER_MILLISECOND;
+    }
+
+    public double getSoftLimitScale(){
+        return softLimitScale;
+    }
+
+    public StopReason getStopReason(){
+        return stopReason;
+    }
+}
@@ -37,6 +37,15 @@ public class TranspositionTable {
     public TTEntry[][] hashTable;
     public int HASH_ENTRY_SIZE;
 
+    // number of buckets sampled to estimate how full the table is (2 entries per bucket, 1000 entries in total)
+    private static final int HASHFULL_SAMPLE_BUCKETS = 500;
+
+    // usage statistics since the last reset
+    private long probeCount;
+    private long hitCount;
+    private long storeCount;
+    private long overwriteCount;
+
     /**
      * Constructor
      *
@@ -44,6 +53,9 @@ public class TranspositionTable {
      * while the second level uses an always replace scheme to handle index collisions in the hash table
      */
     public TranspositionTable(){
+        EngineEvents.TranspositionTableChange event = new EngineEvents.TranspositionTableChange();
+        event.begin();
+
         // convert from megabytes to bytes
         int allocatedMemory = convertToBytes(ALLOCATED_HASH_SIZE_MEGABYTES);
         HASH_ENTRY_SIZE = allocatedMemory / BYTES_PER_ENTRY;
@@ -55,10 +67,13 @@ public class TranspositionTable {
 
         // create the two-leveled transposition table
         hashTable = new TTEntry[HASH_ENTRY_SIZE / 2][2];
+
+        commitEvent(event, "allocate");
     }
 
     public void recordEntry(long zobristHash, short bestMove, byte depth, int eval, byte entry_TYPE){
         TTEntry entry = new TTEntry(zobristHash, bestMove, depth, eval, entry_TYPE);
+        storeCount++;
 
         // obtain the hash key for the entry inside the hashtable
         int hashKey = Math.abs((int) (zobristHash % (HASH_ENTRY_SIZE / 2)));
@@ -76,6 +91,7 @@ public class TranspositionTable {
 
             // at first level, compare by depth preferred to replace entries
             if(existingEntry.depth <= depth){
+                countOverwrite(hashTable[hashKey][1], zobristHash);
 
                 // since new entry is searched to a greater depth, shift first-level entry to the second level
                 hashTable[hashKey][1] = hashTable[hashKey][0];
@@ -86,20 +102,32 @@ public class TranspositionTable {
             else{
                 // place new entry into second level with an "always" replace scheme
                 // if second-level is not empty, replace second-level entry with new entry
+                countOverwrite(hashTable[hashKey][1], zobristHash);
                 hashTable[hashKey][1] = entry;
             }
         }
     }
 
+    /**
+     * Counts an entry of another position being replaced by a new entry
+     * @param replacedEntry refers to the entry being removed from the table, null if the slot is empty
+     */
+    private void countOverwrite(TTEntry replacedEntry, long zobristHash){
+        if(replacedEntry != null && replacedEntry.zobristHash != zobristHash){
+            overwriteCount++;
+        }
+    }
+
     public boolean containsKey(long zobristHash){
         int hashKey = Math.abs((int) (zobristHash % (HASH_ENTRY_SIZE / 2)));
         TTEntry[] entries = hashTable[hashKey];
-        if(entries[0] != null && entries[0].zobristHash == zobristHash){
+        probeCount++;
+        if((entries[0] != null && entries[0].zobristHash == zobristHash)
+                || (entries[1] != null && entries[1].zobristHash == zobristHash)){
+            hitCount++;
             return true;
         }
-        else {
-            return entries[1] != null && entries[1].zobristHash == zobristHash;
-        }
+        return false;
     }
 
     public TTEntry getEntry(long zobristHash){
@@ -114,19 +142,104 @@ public class TranspositionTable {
         return entry;
     }
 
+    /**
+     * Removes all entries, so that the table can be reused for a new search without allocating a new table
+     */
+    public void clear(){
+        EngineEvents.TranspositionTableChange event = new EngineEvents.TranspositionTableChange();
+        event.begin();
+        for(TTEntry[] bucket : hashTable){
+            bucket[0] = null;
+            bucket[1] = null;
+        }
+        resetStatistics();
+        commitEvent(event, "clear");
+    }
+
+    /**
+     * Records the allocation / clearing of the table for the flight recorder
+     * @param action refers to what was done to the table
+     */
+    private void commitEvent(EngineEvents.TranspositionTableChange event, String action){
+        if(event.shouldCommit()){
+            event.action = action;
+            event.sizeMegabytes = (int) ((long) HASH_ENTRY_SIZE * BYTES_PER_ENTRY / convertToBytes(1));
+            event.entries = HASH_ENTRY_SIZE;
+            event.commit();
+        }
+    }
+
     public int size(){
         int counter =0;
         for(int i = 0 ; i < HASH_ENTRY_SIZE / 2 ; i++){
             if(hashTable[i][0] != null){
                 counter++;
             }
-            if(hashTable[i][0] != null){
+            if(hashTable[i][1] != null){
                 counter++;
             }
         }
         return counter;
     }
 
+    /**
+     * Estimates how full the table is by sampling the first buckets, instead of counting every entry like size()
+     * @return the number of entries used per 1000 entries (UCI "hashfull")
+     */
+    public int hashfull(){
+        int buckets = Math.min(HASHFULL_SAMPLE_BUCKETS, HASH_ENTRY_SIZE / 2);
+        int used = 0;
+        for(int i = 0; i < buckets; i++){
+            if(hashTable[i][0] != null){
+                used++;
+            }
+            if(hashTable[i][1] != null){
+                used++;
+            }
+        }
+        return (used * 1000) / (buckets * 2);
+    }
+
+    public long getProbeCount(){
+        return probeCount;
+    }
+
+    public long getHitCount(){
+        return hitCount;
+    }
+
+    public long getStoreCount(){
+        return storeCount;
+    }
+
+    public long getOverwriteCount(){
+        return overwriteCount;
+    }
+
+    /**
+     * @return the percentage of probes which found an entry of the position
+     */
+    public double getHitRate(){
+        return (probeCount == 0) ? 0 : (hitCount * 100.0) / probeCount;
+    }
+
+    /**
+     * @return the percentage of stores which replaced an entry of another position
+     */
+    public double getOverwriteRate(){
+        return (storeCount == 0) ? 0 : (overwriteCount * 100.0) / storeCount;
+    }
+
+    /**
+     * Resets the usage statistics, done at the start of every search
+     */
+    public void resetStatistics(){
+        probeCount = 0;
+        hitCount = 0;
+        storeCount = 0;
+        overwriteCount = 0;
+    }
+
     public static int convertToBytes(int MEGABYTES){
         return MEGABYTES * 1000000;
     }
@@ -108,28 +108,38 @@ public class Zobrist {
         }
 
         // get castling data
+        zobristHash ^= getCastlingHash(board);
+
+        // get enpassant data
+        if(board.canEnpassant()){
+            zobristHash ^= enpassantHash[Piece.getCol(board.getEnpassant())];
+        }
+
+        return zobristHash;
+    }
+
+    /**
+     * @param board refers to the current state of the board
+     * @return the hash of the castling rights of both sides
+     */
+    public static long getCastlingHash(Board board){
+        long hash = 0;
         if(board.getWhiteKingSideCastle()){
-            zobristHash ^= castlingHash[0];
+            hash ^= castlingHash[0];
         }
 
         if(board.getWhiteQueenSideCastle()){
-            zobristHash ^= castlingHash[1];
+            hash ^= castlingHash[1];
         }
 
         if(board.getBlackKingSideCastle()){
-            zobristHash ^= castlingHash[2];
+            hash ^= castlingHash[2];
         }
 
         if(board.getBlackQueenSideCastle()){
-            zobristHash ^= castlingHash[3];
+            hash ^= castlingHash[3];
         }
-
-        // get enpassant data
-        if(board.canEnpassant()){
-            zobristHash ^= enpassantHash[Piece.getCol(board.getEnpassant())];
-        }
-
-        return zobristHash;
+        return hash;
     }
 
     public static long movePiece(long zobrist, int start, int end, Piece piece){
@@ -1,5 +1,6 @@
 import javax.swing.*;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Scanner;
 import java.util.concurrent.TimeUnit;
 
@@ -290,6 +291,12 @@ public class GameManager {
     }
 
     public static void main(String[] args) throws IOException, InterruptedException {
+        // "bench [depth]" as a command line argument runs the bench and exits
+        if(args.length > 0 && args[0].equals("bench")){
+            Bench.run(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         // checks if we want to use UCI protocol
         new UCI();
 
@@ -1,6 +1,8 @@
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Objects;
 
 public class UCI {
@@ -79,7 +81,7 @@ public class UCI {
                 BLANK_ENGINE = new EngineMain(board, loadOpeningBook);
 
                 // garbage collection to clean up memory usage
-                Runtime.getRuntime().gc();
+                EngineEvents.collectGarbage("setoption");
             }
 
             // prints out the starting FEN of the board
@@ -93,7 +95,7 @@ public class UCI {
                 BLANK_ENGINE = new EngineMain(board, loadOpeningBook);
 
                 // free up memory usage from previous searches
-                Runtime.getRuntime().gc();
+                EngineEvents.collectGarbage("ucinewgame");
             }
 
             // sets up a fen position on the board
@@ -108,13 +110,35 @@ public class UCI {
                 BLANK_ENGINE.resetOpeningTrie();
             }
 
+            // runs the perft regression suite
+            else if (command.startsWith("perftsuite")) {
+                String[] tokens = command.trim().split(" ");
+                try{
+                    PerftSuite.run(Arrays.copyOfRange(tokens, 1, tokens.length));
+                }
+                catch(IOException | IllegalArgumentException e){
+                    System.out.println(e.getMessage());
+                }
+            }
+
+            // searches the bench positions and prints the node signature of the build
+            else if (command.equals("bench") || command.startsWith("bench ")) {
+                String[] tokens = command.trim().split(" ");
+                try{
+                    Bench.run(Arrays.copyOfRange(tokens, 1, tokens.length));
+                }
+                catch(NumberFormatException e){
+                    System.out.println("Invalid bench depth: " + tokens[1]);
+                }
+            }
+
             // prints out the board
             else if (command.equals("print")) {
                 board.print(false);
             }
 
-            else if (command.contains("stop")) {
-                // stop function is built into engine search
+            else if (command.contains("stop") || command.equals("ponderhit")) {
+                // stop and ponderhit functions are built into engine search
                 System.out.println("Stop only when search has started!");
             }
 
@@ -122,7 +146,12 @@ public class UCI {
                 System.out.println("Usage:");
                 System.out.println("- go <movetime> <time in seconds>");
                 System.out.println("- go wtime <wtime> btime <btime> winc <winc> binc <binc>");
-                System.out.println("- go perft <depth>");
+                System.out.println("- go ponder wtime <wtime> btime <btime> winc <winc> binc <binc> (followed by 'ponderhit' or 'stop')");
+                System.out.println("- go depth <depth> / go nodes <nodes> / go mate <moves> / go infinite");
+                System.out.println("- go ... movestogo <moves> searchmoves <move1> <move2> ...");
+                System.out.println("- go perft <depth> [threads <threads>]");
+                System.out.println("- perftsuite [file <epd file>] [depth <max depth>] [threads <threads>]");
+                System.out.println("- bench [depth]");
             }
 
             // quit the program
@@ -143,7 +172,19 @@ public class UCI {
         System.out.println("id name " + ENGINE_NAME + " " + VERSION);
         System.out.println("id author " + AUTHOR);
         System.out.println("\noption name Hash type spin default 32 min 1 max 128");
-        System.out.println("option name OwnBook type check default true\n");
+        System.out.println("option name OwnBook type check default true");
+        System.out.println("option name Ponder type check default false");
+        System.out.println("option name MultiPV type spin default 1 min 1 max " + Search.MAX_MULTI_PV);
+        System.out.println("option name IIDMode type combo default Reduction var Off var Reduction var Deepening");
+        System.out.println("option name QSearchChecks type check default false");
+        System.out.println("option name MateSolver type check default true");
+        System.out.println("option name MateSolverHash type spin default 64 min 1 max 1024");
+        System.out.println("option name PerftHash type spin default 0 min 0 max 4096");
+        System.out.println("option name MetricsFile type string default <empty>");
+        System.out.println("option name MetricsInterval type spin default 10 min 1 max 3600");
+        System.out.println("option name MetricsPort type spin default 0 min 0 max 65535");
+        ForwardPruning.printOptions();
+        System.out.println();
         System.out.println("uciok");
     }
 
@@ -184,19 +225,92 @@ public class UCI {
             }
         }
 
+        else if(splitInput[2].equals("Ponder")){
+            // i.e. setoption name Ponder value true
+            Search.PONDER = splitInput[4].equals("true");
+            System.out.println("Ponder " + (Search.PONDER ? "enabled!" : "disabled!"));
+        }
+
+        else if(splitInput[2].equals("MultiPV")){
+            // i.e. setoption name MultiPV value 3
+            int lines = Math.max(1, Math.min(Integer.parseInt(splitInput[4]), Search.MAX_MULTI_PV));
+            Search.MULTI_PV = lines;
+            System.out.println("MultiPV set to " + lines + " lines!");
+        }
+
+        else if(splitInput[2].equals("IIDMode")){
+            // i.e. setoption name IIDMode value Deepening
+            for(Search.IIDMode mode : Search.IIDMode.values()){
+                if(mode.name().equalsIgnoreCase(splitInput[4])){
+                    Search.IID_MODE = mode;
+                    System.out.println("IIDMode set to " + mode + "!");
+                }
+            }
+        }
+
+        else if(splitInput[2].equals("QSearchChecks")){
+            // i.e. setoption name QSearchChecks value true
+            Search.QSEARCH_CHECKS = splitInput[4].equals("true");
+            System.out.println("QSearchChecks " + (Search.QSEARCH_CHECKS ? "enabled!" : "disabled!"));
+        }
+
+        else if(splitInput[2].equals("MateSolver")){
+            // i.e. setoption name MateSolver value false
+            MateSolver.ENABLED = splitInput[4].equals("true");
+            System.out.println("MateSolver " + (MateSolver.ENABLED ? "enabled!" : "disabled!"));
+        }
+
+        else if(splitInput[2].equals("MateSolverHash")){
+            // setoption name MateSolverHash value 64 (in megabytes)
+            MateSolver.MEMORY_MEGABYTES = Math.max(1, Math.min(Integer.parseInt(splitInput[4]), 1024));
+            System.out.println("Allocated " + MateSolver.MEMORY_MEGABYTES + " MB for mate solver!");
+        }
+
+        else if(splitInput[2].equals("PerftHash")){
+            // setoption name PerftHash value 64 (in megabytes, 0 disables the perft hash table)
+            PerftHashTable.ALLOCATED_HASH_SIZE_MEGABYTES = Math.max(0, Math.min(Integer.parseInt(splitInput[4]), 4096));
+            System.out.println("Allocated " + PerftHashTable.ALLOCATED_HASH_SIZE_MEGABYTES + " MB for perft hash table!");
+        }
+
+        else if(splitInput[2].equals("MetricsFile")){
+            // setoption name MetricsFile value /var/lib/node_exporter/blank.prom (<empty> stops writing the file)
+            String fileName = splitInput[4].equals("<empty>") ? "" : splitInput[4];
+            MetricsExporter.startFileExport(fileName);
+            System.out.println(fileName.isEmpty() ? "Metrics file disabled!" : "Writing metrics to " + fileName + "!");
+        }
+
+        else if(splitInput[2].equals("MetricsInterval")){
+            // setoption name MetricsInterval value 10 (in seconds)
+            MetricsExporter.setFileInterval(Math.min(Integer.parseInt(splitInput[4]), 3600));
+            System.out.println("Metrics file written every " + MetricsExporter.FILE_INTERVAL_SECONDS + " seconds!");
+        }
+
+        else if(splitInput[2].equals("MetricsPort")){
+            // setoption name MetricsPort value 9100 (0 stops the endpoint)
+            int port = Math.max(0, Math.min(Integer.parseInt(splitInput[4]), 65535));
+            try{
+                MetricsExporter.startHttpServer(port);
+                System.out.println(port == 0 ? "Metrics endpoint disabled!" : "Serving metrics on http://127.0.0.1:" + port + "/metrics!");
+            }
+            catch(IOException e){
+                System.out.println("Metrics endpoint could not be started: " + e.getMessage());
+            }
+        }
+
         else if(splitInput[2].equals("Hash")){
             // setoption name Hash value 32 (in megabytes)
             int hashSize = Integer.parseInt(splitInput[4]);
             TranspositionTable.ALLOCATED_HASH_SIZE_MEGABYTES = hashSize;
             System.out.println("Allocated " + hashSize + " MB for hash table!");
         }
+
+        else if(ForwardPruning.setOption(splitInput[2], splitInput[4])){
+            // i.e. setoption name LateMovePruning value false / setoption name RazoringMargin value 300
+            System.out.println(splitInput[2] + " set to " + splitInput[4] + "!");
+        }
     }
 
     private void processGo(String input){
-        double ALLOCATED_TIME = DEFAULT_SEARCH;
-        double TOTAL_TIME_LEFT = 0;
-        double INCREMENT_TIME = 0;
-
         boolean isWhite = BLANK_ENGINE.isWhite();
         boolean useOpeningBook;
 
@@ -211,69 +325,109 @@ public class UCI {
             useOpeningBook = false;
         }
 
-        boolean isPerft = false;
-        boolean defaultTiming = false;
-        int depth;
+        SearchLimits limits = new SearchLimits();
+        boolean hasClockTime = false;
+        boolean isMoveTime = false;
 
-        int index = 0;
+        int index = 1;
         String[] tokens = input.split(" ");
         while(index < tokens.length){
             switch (tokens[index]) {
                 case "wtime":
+                    // time given is in milliseconds, convert to seconds
                     if(isWhite){
-                        TOTAL_TIME_LEFT = Integer.parseInt(tokens[index + 1]);
-                        index += 2;
+                        limits.timeLeft = Double.parseDouble(tokens[index + 1]) / 1000;
+                        hasClockTime = true;
                     }
+                    index++;
                     break;
 
                 case "btime":
                     if(!isWhite){
-                        TOTAL_TIME_LEFT = Integer.parseInt(tokens[index + 1]);
-                        index += 2;
+                        limits.timeLeft = Double.parseDouble(tokens[index + 1]) / 1000;
+                        hasClockTime = true;
                     }
+                    index++;
                     break;
 
                 case "winc":
                     if(isWhite){
-                        INCREMENT_TIME = Integer.parseInt(tokens[index + 1]);
-                        index += 2;
+                        limits.increment = Double.parseDouble(tokens[index + 1]) / 1000;
+                        hasClockTime = true;
                     }
+                    index++;
                     break;
 
                 case "binc":
                     if(!isWhite){
-                        INCREMENT_TIME = Integer.parseInt(tokens[index + 1]);
-                        index += 2;
+                        limits.increment = Double.parseDouble(tokens[index + 1]) / 1000;
+                        hasClockTime = true;
                     }
+                    index++;
+                    break;
+
+                case "movestogo":
+                    limits.movesToGo = Integer.parseInt(tokens[index + 1]);
+                    index++;
                     break;
 
                 case "movetime":
                     // search for exactly input milliseconds
-                    ALLOCATED_TIME = Integer.parseInt(tokens[index + 1]);
-                    ALLOCATED_TIME /= 1000; // convert from milliseconds to seconds
+                    limits.searchDuration = Double.parseDouble(tokens[index + 1]) / 1000;
+                    isMoveTime = true;
+                    index++;
+                    break;
 
-                    BLANK_ENGINE.searchMove(useOpeningBook && loadOpeningBook, ALLOCATED_TIME);
-                    return;
+                case "depth":
+                    limits.depth = Integer.parseInt(tokens[index + 1]);
+                    index++;
+                    break;
+
+                case "nodes":
+                    limits.nodes = Long.parseLong(tokens[index + 1]);
+                    index++;
+                    break;
+
+                case "mate":
+                    limits.mate = Integer.parseInt(tokens[index + 1]);
+                    index++;
+                    break;
+
+                case "searchmoves":
+                    // all following tokens in move notation are root moves to search
+                    ArrayList<Short> legalMoves = board.getAllLegalMoves();
+                    while(index + 1 < tokens.length && isMoveNotation(tokens[index + 1])){
+                        short move = convertMoveNotation(tokens[index + 1], board);
+                        if(legalMoves.contains(move)){
+                            limits.searchMoves.add(move);
+                        }
+                        index++;
+                    }
+                    break;
 
                 case "infinite":
-                    BLANK_ENGINE.searchMove(false, INFINITE_SEARCH);
                     /*
                      * MAKE SURE TO CALL 'ucinewgame' AFTER USING INFINITE SEARCH
                      */
-                    return;
+                    limits.infinite = true;
+                    break;
 
-                case "depth":
-                    depth = Integer.parseInt(tokens[index + 1]);
-                    BLANK_ENGINE.fixedDepthSearch(depth);
-                    return;
+                case "ponder":
+                    // search on the opponent's time until "ponderhit" or "stop" is given
+                    limits.ponder = true;
+                    break;
 
                 case "perft":
-                    depth = Integer.parseInt(tokens[index + 1]);
+                    int depth = Integer.parseInt(tokens[index + 1]);
+                    // "go perft <depth> threads <n>" splits the tree across threads
+                    if(index + 3 < tokens.length && tokens[index + 2].equals("threads")){
+                        int threads = Integer.parseInt(tokens[index + 3]);
+                        new ParallelPerft(board, threads).perft(depth);
+                        return;
+                    }
                     Perft goPerft = new Perft(board);
                     goPerft.perft(depth);
-                    isPerft = true;
-                    index += 2;
-                    break;
+                    return;
 
                 default:
                     break;
@@ -281,19 +435,35 @@ public class UCI {
             index++;
         }
 
-        if(TOTAL_TIME_LEFT == 0 && INCREMENT_TIME == 0){
-            defaultTiming = true;
-        }
-
-        if(!isPerft && !defaultTiming){
-            // time given is in milliseconds, convert to seconds
-            TOTAL_TIME_LEFT = TOTAL_TIME_LEFT / 1000;
-            INCREMENT_TIME = INCREMENT_TIME / 1000;
-            ALLOCATED_TIME = Clock.getTimePerMove(TOTAL_TIME_LEFT, INCREMENT_TIME);
+        // time for the move is allocated from the clock by the time manager.
+        // if no limits are given, use the default search duration
+        if(!isMoveTime && !hasClockTime && (limits.isStandardSearch() || limits.ponder)){
+            limits.searchDuration = DEFAULT_SEARCH;
         }
 
         // start searching with engine
-        BLANK_ENGINE.searchMove(useOpeningBook && loadOpeningBook, ALLOCATED_TIME);
+        BLANK_ENGINE.searchMove(useOpeningBook && loadOpeningBook, limits);
+    }
+
+    /**
+     * @param token refers to a token of a UCI command
+     * @return true if the token is a move in long algebraic notation (i.e. e2e4, e7e8q)
+     */
+    private static boolean isMoveNotation(String token){
+        return (token.length() == 4 || token.length() == 5)
+                && token.charAt(0) >= 'a' && token.charAt(0) <= 'h' && Character.isDigit(token.charAt(1))
+                && token.charAt(2) >= 'a' && token.charAt(2) <= 'h' && Character.isDigit(token.charAt(3));
+    }
+
+    /**
+     * @param move refers to the move represented in algebraic notation i.e. e2a6, e7e8q.
+     * @param board refers to the board which the move is made on
+     * @return the encoded move
+     */
+    private static short convertMoveNotation(String move, Board board){
+        int startPosition = FENUtilities.convertRankAndFileToPosition(move.substring(0, 2));
+        int endPosition = FENUtilities.convertRankAndFileToPosition(move.substring(2, 4));
+        return MoveGenerator.generateMove(startPosition, endPosition, determineMoveType(move, board));
     }
 
     // debugging uci commands
@@ -359,10 +529,7 @@ public class UCI {
 
             for (int i = 1; i < moves.length; i++) {
                 // get start and end index and determine the move type of the move
-                int startPosition = FENUtilities.convertRankAndFileToPosition(moves[i].substring(0, 2));
-                int endPosition = FENUtilities.convertRankAndFileToPosition(moves[i].substring(2, 4));
-
-                short currentMove = MoveGenerator.generateMove(startPosition, endPosition, determineMoveType(moves[i], board));
+                short currentMove = convertMoveNotation(moves[i], board);
 
                 // records the moves made in the engine's white opening book
                 if(BLANK_ENGINE.isUsingWhiteBook && i != moves.length - 1){
@@ -508,6 +675,11 @@ public class UCI {
     }
 
     public static void main(String[] args) throws IOException {
+        // "bench [depth]" as a command line argument runs the bench and exits
+        if(args.length > 0 && args[0].equals("bench")){
+            Bench.run(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         new UCI();
     }
 }
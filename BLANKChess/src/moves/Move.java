@@ -20,6 +20,9 @@ public class Move {
     private final int fullMoveNumber;
     private final int halfMoveClock;
 
+    // state of the board before the move, only taken when the state verifier is enabled
+    private String verifySnapshot;
+
     /**
      * Move a piece on the board based on move rules and update the board
      * whilst checking if the game has ended.
@@ -67,6 +70,13 @@ public class Move {
         Piece startPiece = startTile.getPiece();
         boolean isWhitePiece = startPiece.isWhite();
 
+        if(StateVerifier.ENABLED){
+            verifySnapshot = StateVerifier.snapshot(board);
+        }
+
+        // castling rights before the move, the hash is updated once all rights lost by the move are removed
+        long castlingHash = Zobrist.getCastlingHash(board);
+
         if(MoveGenerator.isCapture(encodedMove) || startPiece.isPawn()){
             board.setHalfMoveClock(0);  // reset half-move clock if a pawn moves or a capture is made
         }
@@ -102,9 +112,6 @@ public class Move {
                         updatePiecePosition(true, 63, 61);
                         board.getTile(61).setPiece(board.getTile(63).getPiece());
                         board.getTile(63).setPiece(null);
-
-                        // update white king side castling hash
-                        board.setZobristHash((board.getZobristHash() ^ Zobrist.castlingHash[0]));
                     }
                     else if (isQueenSideCastling()) {
                         // shift white queen side rook (from position 56 to 59) and remove castling rights
@@ -112,9 +119,6 @@ public class Move {
                         updatePiecePosition(true, 56, 59);
                         board.getTile(59).setPiece(board.getTile(56).getPiece());
                         board.getTile(56).setPiece(null);
-
-                        // update white queen side castling hash
-                        board.setZobristHash((board.getZobristHash() ^ Zobrist.castlingHash[1]));
                     }
                     // even if it is not a castling move, remove white castling rights as king has moved
                     board.setWhiteKingSideCastle(false);
@@ -129,18 +133,12 @@ public class Move {
                         board.getTile(5).setPiece(board.getTile(7).getPiece());
                         board.getTile(7).setPiece(null);
 
-                        // update black king side castling hash
-                        board.setZobristHash((board.getZobristHash() ^ Zobrist.castlingHash[2]));
-
                     } else if(isQueenSideCastling()) {
                         // shift black queen side rook (from position 0 to 3) and remove castling rights
                         board.setHasKingCastled(true, false);
                         updatePiecePosition(false, 0, 3);
                         board.getTile(3).setPiece(board.getTile(0).getPiece());
                         board.getTile(0).setPiece(null);
-
-                        // update black queen side castling hash
-                        board.setZobristHash((board.getZobristHash() ^ Zobrist.castlingHash[3]));
                     }
                     // even if it is not a castling move, remove black castling rights as king has moved
                     board.setBlackKingSideCastle(false);
@@ -156,28 +154,10 @@ public class Move {
                 if (board.hasKingSideCastling(isWhitePiece) && isKingSideRook(isWhitePiece, getStart())) {
                     board.setRookSideCastling(isWhitePiece, getStart(), false);
                     rookLostCastling = true;
-
-                    if(isWhitePiece){
-                        // update white king side castling hash
-                        board.setZobristHash((board.getZobristHash() ^ Zobrist.castlingHash[0]));
-                    }
-                    else{
-                        // update black king side castling hash
-                        board.setZobristHash((board.getZobristHash() ^ Zobrist.castlingHash[2]));
-                    }
                 }
                 else if (board.hasQueenSideCastling(isWhitePiece) && isQueenSideRook(isWhitePiece, getStart())) {
                     board.setRookSideCastling(isWhitePiece, getStart(), false);
                     rookLostCastling = true;
-
-                    if(isWhitePiece){
-                        // update white queen side castling hash
-                        board.setZobristHash((board.getZobristHash() ^ Zobrist.castlingHash[1]));
-                    }
-                    else{
-                        // update black queen side castling hash
-                        board.setZobristHash((board.getZobristHash() ^ Zobrist.castlingHash[3]));
-                    }
                 }
             }
         }
@@ -215,7 +195,7 @@ public class Move {
             board.promote(getPromotionPieceType(moveType), startTile);
 
             // add promoted piece to zobrist
-            board.setZobristHash(Zobrist.update(board.getZobristHash(), getStart(), startPiece));
+            board.setZobristHash(Zobrist.update(board.getZobristHash(), getStart(), startTile.getPiece()));
         }
 
         // updates piece position in piece list in board which tracks individual pieces
@@ -225,10 +205,17 @@ public class Move {
         endTile.setPiece(startTile.getPiece());
         startTile.setPiece(null);
 
+        // update the castling hash with the rights lost by a king / rook moving or a rook being captured
+        board.setZobristHash(board.getZobristHash() ^ castlingHash ^ Zobrist.getCastlingHash(board));
+
         // Update enpassant availability after shifting the pieces
         board.setEnpassant(enpassantPosition);
         board.setPreviousMove(this);
         board.setTurn(!board.isWhiteTurn());
+
+        if(StateVerifier.ENABLED){
+            StateVerifier.verifyMake(board, this);
+        }
     }
 
     // undo the move made on the board
@@ -331,12 +318,20 @@ public class Move {
 
         // reset zobrist hash back to original
         board.setZobristHash(zobrist);
+
+        if(StateVerifier.ENABLED){
+            StateVerifier.verifyUnmake(board, this, verifySnapshot, previousMove);
+        }
     }
 
     /**
      * Makes a null move on the board for null move pruning
      */
     public void makeNullMove(){
+        if(StateVerifier.ENABLED){
+            verifySnapshot = StateVerifier.snapshot(board);
+        }
+
         // set enpassant to unavailable
         int enpassantPosition = -1;
         board.setEnpassant(enpassantPosition);
@@ -344,6 +339,10 @@ public class Move {
         // set previous move to this move
         board.setPreviousMove(this);
         board.setTurn(!board.isWhiteTurn());
+
+        if(StateVerifier.ENABLED){
+            StateVerifier.verifyMake(board, this);
+        }
     }
 
     /**
@@ -354,10 +353,14 @@ public class Move {
         board.setTurn(!board.isWhiteTurn());
 
         // set previous move back
-        board.setPreviousMove(board.getPreviousMove());
+        board.setPreviousMove(previousMove);
 
         // reset enpassant to initial value before move
         board.setEnpassant(previousEnpassantPosition);
+
+        if(StateVerifier.ENABLED){
+            StateVerifier.verifyUnmake(board, this, verifySnapshot, previousMove);
+        }
     }
 
     /**
@@ -464,6 +467,10 @@ public class Move {
         return encodedMove;
     }
 
+    public Move getPreviousMove(){
+        return previousMove;
+    }
+
     private int getStart(){
         return startPosition;
     }
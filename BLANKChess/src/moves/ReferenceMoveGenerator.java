@@ -0,0 +1,424 @@
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Reference move generator used by the move generator fuzzer to check the board's move generation.
+ *
+ * It shares no code with the Board / Piece move generation: the position is read straight from FEN into an array of
+ * FEN piece characters, pseudo-legal moves are generated square by square and a move is legal if the king of the
+ * side to move is not attacked after the move is made on a copy of the array. It is written to be easy to check,
+ * not fast.
+ */
+public class ReferenceMoveGenerator implements MoveGenFuzzer.LegalMoveGenerator {
+    private static final int[][] KNIGHT_OFFSETS = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
+    private static final int[][] KING_OFFSETS = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{-1, -1}, {-1, 1}, {1, -1}, {1, 1}};
+    private static final int[][] ROOK_DIRECTIONS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+    private static final char[] PROMOTIONS = {'q', 'r', 'b', 'n'};
+    private static final char EMPTY = '.';
+
+    /**
+     * Position read from FEN, squares are indexed like the board (a8 = 0, h1 = 63)
+     */
+    private static class Position {
+        char[] squares = new char[64];
+        boolean isWhiteTurn;
+        String castling;
+        int enpassant;
+    }
+
+    /**
+     * A move along with the information needed to make it on the array of squares
+     */
+    private static class ReferenceMove {
+        final int start;
+        final int end;
+        final char promotion;       // FEN character of the promoted piece of the side to move, 0 if none
+        final boolean isEnpassant;
+        final boolean isCastling;
+        final boolean isCapture;
+
+        ReferenceMove(int start, int end, char promotion, boolean isEnpassant, boolean isCastling, boolean isCapture){
+            this.start = start;
+            this.end = end;
+            this.promotion = promotion;
+            this.isEnpassant = isEnpassant;
+            this.isCastling = isCastling;
+            this.isCapture = isCapture;
+        }
+
+        String toUCI(){
+            String move = FENUtilities.convertIndexToRankAndFile(start) + FENUtilities.convertIndexToRankAndFile(end);
+            return (promotion == 0) ? move : move + Character.toLowerCase(promotion);
+        }
+    }
+
+    @Override
+    public Set<String> getLegalMoves(String FEN){
+        Set<String> moves = new LinkedHashSet<>();
+        for(ReferenceMove move : generateLegalMoves(parse(FEN))){
+            moves.add(move.toUCI());
+        }
+        return moves;
+    }
+
+    @Override
+    public Set<String> getCaptures(String FEN){
+        Set<String> moves = new LinkedHashSet<>();
+        for(ReferenceMove move : generateLegalMoves(parse(FEN))){
+            if(move.isCapture){
+                moves.add(move.toUCI());
+            }
+        }
+        return moves;
+    }
+
+    private static Position parse(String FEN){
+        String[] splitFEN = FEN.trim().split(" ");
+        Position position = new Position();
+        int square = 0;
+        for(char c : splitFEN[0].toCharArray()){
+            if(c == '/'){
+                continue;
+            }
+            if(Character.isDigit(c)){
+                for(int i = 0; i < c - '0'; i++){
+                    position.squares[square++] = EMPTY;
+                }
+            }
+            else{
+                position.squares[square++] = c;
+            }
+        }
+        position.isWhiteTurn = splitFEN[1].equals("w");
+        position.castling = splitFEN[2];
+        position.enpassant = splitFEN[3].equals("-") ? -1 : FENUtilities.convertRankAndFileToPosition(splitFEN[3]);
+        return position;
+    }
+
+    private static int row(int square){
+        return square / 8;
+    }
+
+    private static int col(int square){
+        return square % 8;
+    }
+
+    private static boolean onBoard(int row, int col){
+        return row >= 0 && row < 8 && col >= 0 && col < 8;
+    }
+
+    private static boolean isWhite(char piece){
+        return Character.isUpperCase(piece);
+    }
+
+    private static boolean isEnemy(char piece, boolean isWhiteTurn){
+        return piece != EMPTY && isWhite(piece) != isWhiteTurn;
+    }
+
+    private static ArrayList<ReferenceMove> generateLegalMoves(Position position){
+        ArrayList<ReferenceMove> legalMoves = new ArrayList<>();
+        for(ReferenceMove move : generatePseudoLegalMoves(position)){
+            char[] squares = makeMove(position.squares, move);
+            if(!isAttacked(squares, findKing(squares, position.isWhiteTurn), !position.isWhiteTurn)){
+                legalMoves.add(move);
+            }
+        }
+        return legalMoves;
+    }
+
+    private static ArrayList<ReferenceMove> generatePseudoLegalMoves(Position position){
+        ArrayList<ReferenceMove> moves = new ArrayList<>();
+        char[] squares = position.squares;
+        boolean white = position.isWhiteTurn;
+
+        for(int square = 0; square < 64; square++){
+            char piece = squares[square];
+            if(piece == EMPTY || isWhite(piece) != white){
+                continue;
+            }
+            int row = row(square);
+            int col = col(square);
+            switch(Character.toLowerCase(piece)){
+                case 'p':
+                    addPawnMoves(position, square, moves);
+                    break;
+                case 'n':
+                    addStepMoves(squares, square, KNIGHT_OFFSETS, white, moves);
+                    break;
+                case 'k':
+                    addStepMoves(squares, square, KING_OFFSETS, white, moves);
+                    addCastlingMoves(position, square, moves);
+                    break;
+                case 'b':
+                    addSlidingMoves(squares, row, col, BISHOP_DIRECTIONS, white, moves);
+                    break;
+                case 'r':
+                    addSlidingMoves(squares, row, col, ROOK_DIRECTIONS, white, moves);
+                    break;
+                case 'q':
+                    addSlidingMoves(squares, row, col, BISHOP_DIRECTIONS, white, moves);
+                    addSlidingMoves(squares, row, col, ROOK_DIRECTIONS, white, moves);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return moves;
+    }
+
+    private static void addPawnMoves(Position position, int square, ArrayList<ReferenceMove> moves){
+        char[] squares = position.squares;
+        boolean white = position.isWhiteTurn;
+        int forward = white ? -1 : 1;
+        int startRow = white ? 6 : 1;
+        int promotionRow = white ? 0 : 7;
+        int row = row(square);
+        int col = col(square);
+
+        // pushes
+        int pushRow = row + forward;
+        if(onBoard(pushRow, col) && squares[pushRow * 8 + col] == EMPTY){
+            addPawnMove(square, pushRow * 8 + col, pushRow == promotionRow, false, false, white, moves);
+            int doublePushRow = row + 2 * forward;
+            if(row == startRow && squares[doublePushRow * 8 + col] == EMPTY){
+                moves.add(new ReferenceMove(square, doublePushRow * 8 + col, (char) 0, false, false, false));
+            }
+        }
+
+        // captures
+        for(int side = -1; side <= 1; side += 2){
+            int captureCol = col + side;
+            if(!onBoard(pushRow, captureCol)){
+                continue;
+            }
+            int end = pushRow * 8 + captureCol;
+            if(isEnemy(squares[end], white)){
+                addPawnMove(square, end, pushRow == promotionRow, true, false, white, moves);
+            }
+            else if(end == position.enpassant && squares[end] == EMPTY){
+                addPawnMove(square, end, false, true, true, white, moves);
+            }
+        }
+    }
+
+    private static void addPawnMove(int start, int end, boolean isPromotion, boolean isCapture, boolean isEnpassant,
+                                    boolean white, ArrayList<ReferenceMove> moves){
+        if(!isPromotion){
+            moves.add(new ReferenceMove(start, end, (char) 0, isEnpassant, false, isCapture));
+            return;
+        }
+        for(char promotion : PROMOTIONS){
+            moves.add(new ReferenceMove(start, end, white ? Character.toUpperCase(promotion) : promotion, false, false, isCapture));
+        }
+    }
+
+    private static void addStepMoves(char[] squares, int square, int[][] offsets, boolean white, ArrayList<ReferenceMove> moves){
+        for(int[] offset : offsets){
+            int row = row(square) + offset[0];
+            int col = col(square) + offset[1];
+            if(!onBoard(row, col)){
+                continue;
+            }
+            int end = row * 8 + col;
+            if(squares[end] == EMPTY || isEnemy(squares[end], white)){
+                moves.add(new ReferenceMove(square, end, (char) 0, false, false, squares[end] != EMPTY));
+            }
+        }
+    }
+
+    private static void addSlidingMoves(char[] squares, int startRow, int startCol, int[][] directions, boolean white,
+                                        ArrayList<ReferenceMove> moves){
+        int start = startRow * 8 + startCol;
+        for(int[] direction : directions){
+            int row = startRow + direction[0];
+            int col = startCol + direction[1];
+            while(onBoard(row, col)){
+                int end = row * 8 + col;
+                if(squares[end] != EMPTY){
+                    if(isEnemy(squares[end], white)){
+                        moves.add(new ReferenceMove(start, end, (char) 0, false, false, true));
+                    }
+                    break;
+                }
+                moves.add(new ReferenceMove(start, end, (char) 0, false, false, false));
+                row += direction[0];
+                col += direction[1];
+            }
+        }
+    }
+
+    private static void addCastlingMoves(Position position, int square, ArrayList<ReferenceMove> moves){
+        char[] squares = position.squares;
+        boolean white = position.isWhiteTurn;
+        int kingSquare = white ? 60 : 4;
+        if(square != kingSquare || isAttacked(squares, square, !white)){
+            return;
+        }
+        char rook = white ? 'R' : 'r';
+
+        // king side: f and g files empty and not attacked
+        if(position.castling.indexOf(white ? 'K' : 'k') >= 0 && squares[square + 3] == rook
+                && squares[square + 1] == EMPTY && squares[square + 2] == EMPTY
+                && !isAttacked(squares, square + 1, !white) && !isAttacked(squares, square + 2, !white)){
+            moves.add(new ReferenceMove(square, square + 2, (char) 0, false, true, false));
+        }
+
+        // queen side: b, c and d files empty, c and d files not attacked
+        if(position.castling.indexOf(white ? 'Q' : 'q') >= 0 && squares[square - 4] == rook
+                && squares[square - 1] == EMPTY && squares[square - 2] == EMPTY && squares[square - 3] == EMPTY
+                && !isAttacked(squares, square - 1, !white) && !isAttacked(squares, square - 2, !white)){
+            moves.add(new ReferenceMove(square, square - 2, (char) 0, false, true, false));
+        }
+    }
+
+    /**
+     * @return a copy of the squares after the move
+     */
+    private static char[] makeMove(char[] squares, ReferenceMove move){
+        char[] result = squares.clone();
+        char piece = result[move.start];
+        result[move.start] = EMPTY;
+        result[move.end] = (move.promotion != 0) ? move.promotion : piece;
+
+        if(move.isEnpassant){
+            // the captured pawn is next to the moving pawn, on the row the pawn moved from
+            result[row(move.start) * 8 + col(move.end)] = EMPTY;
+        }
+        else if(move.isCastling){
+            boolean isKingSide = move.end > move.start;
+            int rookStart = isKingSide ? move.start + 3 : move.start - 4;
+            int rookEnd = isKingSide ? move.start + 1 : move.start - 1;
+            result[rookEnd] = result[rookStart];
+            result[rookStart] = EMPTY;
+        }
+        return result;
+    }
+
+    private static int findKing(char[] squares, boolean white){
+        char king = white ? 'K' : 'k';
+        for(int square = 0; square < 64; square++){
+            if(squares[square] == king){
+                return square;
+            }
+        }
+        throw new IllegalStateException("No king on the board");
+    }
+
+    /**
+     * @param byWhite refers to the side of the attacking pieces
+     * @return true if the square is attacked by a piece of the side
+     */
+    private static boolean isAttacked(char[] squares, int square, boolean byWhite){
+        int row = row(square);
+        int col = col(square);
+
+        // pawns attack towards the opponent, so look for them one row behind the square (from the attacker's side)
+        int pawnRow = byWhite ? row + 1 : row - 1;
+        char pawn = byWhite ? 'P' : 'p';
+        for(int side = -1; side <= 1; side += 2){
+            if(onBoard(pawnRow, col + side) && squares[pawnRow * 8 + col + side] == pawn){
+                return true;
+            }
+        }
+
+        if(isAttackedByStep(squares, row, col, KNIGHT_OFFSETS, byWhite ? 'N' : 'n')
+                || isAttackedByStep(squares, row, col, KING_OFFSETS, byWhite ? 'K' : 'k')){
+            return true;
+        }
+
+        char queen = byWhite ? 'Q' : 'q';
+        return isAttackedBySlider(squares, row, col, BISHOP_DIRECTIONS, byWhite ? 'B' : 'b', queen)
+                || isAttackedBySlider(squares, row, col, ROOK_DIRECTIONS, byWhite ? 'R' : 'r', queen);
+    }
+
+    private static boolean isAttackedByStep(char[] squares, int row, int col, int[][] offsets, char attacker){
+        for(int[] offset : offsets){
+            int attackerRow = row + offset[0];
+            int attackerCol = col + offset[1];
+            if(onBoard(attackerRow, attackerCol) && squares[attackerRow * 8 + attackerCol] == attacker){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAttackedBySlider(char[] squares, int row, int col, int[][] directions, char slider, char queen){
+        for(int[] direction : directions){
+            int attackerRow = row + direction[0];
+            int attackerCol = col + direction[1];
+            while(onBoard(attackerRow, attackerCol)){
+                char piece = squares[attackerRow * 8 + attackerCol];
+                if(piece != EMPTY){
+                    if(piece == slider || piece == queen){
+                        return true;
+                    }
+                    break;
+                }
+                attackerRow += direction[0];
+                attackerCol += direction[1];
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the side which is not to move is in check, which is not a valid position
+     */
+    public static boolean isOpponentInCheck(String FEN){
+        Position position = parse(FEN);
+        return isAttacked(position.squares, findKing(position.squares, !position.isWhiteTurn), position.isWhiteTurn);
+    }
+
+    /**
+     * @return the number of leaf nodes of the position at a depth, used to check the reference generator itself
+     */
+    public long perft(String FEN, int depth){
+        return perft(parse(FEN), depth);
+    }
+
+    private static long perft(Position position, int depth){
+        if(depth == 0){
+            return 1;
+        }
+        ArrayList<ReferenceMove> moves = generateLegalMoves(position);
+        if(depth == 1){
+            return moves.size();
+        }
+        long count = 0;
+        for(ReferenceMove move : moves){
+            count += perft(makeChildPosition(position, move), depth - 1);
+        }
+        return count;
+    }
+
+    /**
+     * @return the position after the move, with castling rights and enpassant updated
+     */
+    private static Position makeChildPosition(Position position, ReferenceMove move){
+        Position child = new Position();
+        child.squares = makeMove(position.squares, move);
+        child.isWhiteTurn = !position.isWhiteTurn;
+
+        // castling rights are lost when the king or a rook moves away from, or a piece is captured on, its square
+        StringBuilder castling = new StringBuilder();
+        String[] rights = {"K", "Q", "k", "q"};
+        int[][] rightSquares = {{60, 63}, {60, 56}, {4, 7}, {4, 0}};
+        for(int i = 0; i < rights.length; i++){
+            boolean lost = false;
+            for(int rightSquare : rightSquares[i]){
+                lost |= move.start == rightSquare || move.end == rightSquare;
+            }
+            if(position.castling.contains(rights[i]) && !lost){
+                castling.append(rights[i]);
+            }
+        }
+        child.castling = castling.length() == 0 ? "-" : castling.toString();
+
+        char piece = position.squares[move.start];
+        boolean isDoublePush = Character.toLowerCase(piece) == 'p' && Math.abs(move.end - move.start) == 16;
+        child.enpassant = isDoublePush ? (move.start + move.end) / 2 : -1;
+        return child;
+    }
+}
@@ -66,14 +66,25 @@ public class OpeningTrie {
             throw new IllegalArgumentException("Invalid file!");
         }
 
+        EngineEvents.OpeningBookLoad event = new EngineEvents.OpeningBookLoad();
+        event.begin();
+
         // builds the opening tree based on PGN input
         InputStream inputStream = getClass().getResourceAsStream(fileName);
         BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
 
         String fileLine;
+        int lines = 0;
         // build the trie by processing the file line by line for each move
         while((fileLine = reader.readLine()) != null){
             addMove(fileLine);  // adds the whole line to the trie
+            lines++;
+        }
+
+        if(event.shouldCommit()){
+            event.fileName = fileName;
+            event.lines = lines;
+            event.commit();
         }
     }
 